@@ -0,0 +1,72 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks publishing a frame, updateBackBuffer and the zoom copy.
+ * 
+ * Each invocation dirties the whole screen with one diagonal line and
+ * flushes, on a screen with a full page of printed text.
+ *
+ * @author Ronald Chen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ComposeBenchmark {
+
+    @Param({"1", "2", "3", "4"})
+    public int zoom;
+    
+    private Screen scr;
+    
+    @Setup
+    public void setUp() {
+        scr = new Screen();
+        scr.zoom(zoom);
+        for(int i = 0; i < 100; i++) {
+            scr.color(i*0x030507);
+            scr.print("The quick brown fox jumps over the lazy dog. ");
+        }
+        scr.flush();
+    }
+    
+    @Benchmark
+    public long fullFrame() {
+        scr.line(0, 0, scr.width() - 1, scr.height() - 1);
+        scr.flush();
+        return scr.getPublishedFrames();
+    }
+    
+    /**
+     * A small change, which only recomposes a small dirty region.
+     */
+    @Benchmark
+    public long smallChange() {
+        scr.circle(250, 250, 10);
+        scr.flush();
+        return scr.getPublishedFrames();
+    }
+}
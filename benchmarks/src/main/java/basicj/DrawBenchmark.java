@@ -0,0 +1,92 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the draw commands.
+ * 
+ * Every command is run on a 500 by 500 Screen, through the same public 
+ * Screen methods BasicJ calls.  Nothing is flushed, so only the drawing 
+ * itself is measured.
+ *
+ * @author Ronald Chen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DrawBenchmark {
+
+    /**
+     * The length of lines and the radius of circles.
+     */
+    @Param({"1", "10", "100"})
+    public int size;
+    
+    /**
+     * The line thickness, 1 takes the direct rasterizer, 2 takes Java2D.
+     */
+    @Param({"1", "2"})
+    public int thickness;
+    
+    private Screen scr;
+    
+    private int i;
+    
+    @Setup
+    public void setUp() {
+        scr = new Screen();
+        scr.thickness(thickness);
+    }
+    
+    @Benchmark
+    public void point() {
+        i = (i + 7)&0xFFFF;
+        scr.point(i%500, i/500%500);
+    }
+    
+    @Benchmark
+    public void line() {
+        i = (i + 7)&0xFFFF;
+        int x = i%(500 - size);
+        int y = i/500%(500 - size);
+        scr.line(x, y, x + size, y + size/2);
+    }
+    
+    @Benchmark
+    public void circle() {
+        i = (i + 7)&0xFFFF;
+        scr.circle(size + i%(500 - 2*size), size + i/500%(500 - 2*size), size);
+    }
+    
+    /**
+     * A new color for every point, the worst case of color().
+     */
+    @Benchmark
+    public void colorChurn() {
+        i = (i + 7)&0xFFFF;
+        scr.color(i*0x010101);
+        scr.point(i%500, i/500%500);
+    }
+}
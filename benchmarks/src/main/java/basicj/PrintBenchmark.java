@@ -0,0 +1,67 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks printing.
+ * 
+ * print measures the print command on a full screen of text, which scrolls
+ * on every line.  The Screen only keeps the lines it shows, so there is no
+ * scrollback to vary here, see PrintLayoutBenchmark for that.
+ *
+ * @author Ronald Chen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PrintBenchmark {
+    
+    private Screen scr;
+    
+    @Setup
+    public void setUp() {
+        scr = new Screen();
+        for(int i = 0; i <= scr.textRows(); i++) {
+            scr.print("line " + i + " of the screen\n");
+        }
+    }
+    
+    @Benchmark
+    public void print() {
+        scr.print("Hello, World!\n");
+    }
+    
+    /**
+     * Printing in many colors, which makes a run per character.
+     */
+    @Benchmark
+    public void printColors() {
+        for(int c = 0; c < 16; c++) {
+            scr.color(Colors.toColor(c).getRGB());
+            scr.print("*");
+        }
+        scr.print("\n");
+    }
+}
@@ -0,0 +1,70 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks PrintLayout, which replaced formatPrintBuffer, with a growing
+ * amount of kept text.
+ *
+ * @author Ronald Chen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PrintLayoutBenchmark {
+
+    /**
+     * The number of lines kept.
+     */
+    @Param({"40", "400", "4000"})
+    public int scrollback;
+    
+    private PrintLayout layout;
+    
+    private int i;
+    
+    @Setup
+    public void setUp() {
+        layout = new PrintLayout(80, scrollback);
+        for(int i = 0; i < scrollback; i++) {
+            layout.print(Color.WHITE.getRGB(), "line " + i + " of the scrollback, long enough to wrap once at 80 characters\n");
+        }
+    }
+    
+    @Benchmark
+    public int layoutPrint() {
+        return layout.print(Color.WHITE.getRGB(), "Hello, World!\n");
+    }
+    
+    /**
+     * Wraps all kept text again, as the screen command does.
+     */
+    @Benchmark
+    public void layoutResize() {
+        i++;
+        layout.setSize(60 + (i&1)*20, scrollback);
+    }
+}
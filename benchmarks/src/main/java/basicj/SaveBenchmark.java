@@ -0,0 +1,74 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import basicj.util.BMPEncoder;
+
+/**
+ * Benchmarks BMPEncoder.encode, including writing the file.
+ *
+ * @author Ronald Chen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SaveBenchmark {
+
+    /**
+     * The width and height of the image.
+     */
+    @Param({"500", "4000"})
+    public int size;
+    
+    private BufferedImage image;
+    
+    private File file;
+    
+    @Setup
+    public void setUp() throws IOException {
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics g = image.getGraphics();
+        for(int i = 0; i < size; i += 10) {
+            g.setColor(new java.awt.Color(i*0x010305&0xFFFFFF));
+            g.drawLine(0, i, size - 1, size - 1 - i);
+        }
+        file = File.createTempFile("benchmark", ".bmp");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+    
+    @Benchmark
+    public long encode() {
+        BMPEncoder.encode(file.getPath(), image);
+        return file.length();
+    }
+}
@@ -19,13 +19,24 @@ package basicj;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 
 import java.util.*;
-import java.util.Timer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * The main BasicJ class.
@@ -49,10 +60,16 @@ import java.util.Timer;
  * </code></pre>
  * 
  * where <code>&lt;BasicJ commands&gt;</code> are public methods of this class.
+ * 
+ * When there is no display, or <code>java.awt.headless</code> is 
+ * <code>true</code>, or the program is run with 
+ * <code>-Dbasicj.headless=true</code>, no window is opened.  The screen is 
+ * still drawn and can be saved with the save command, printed text also goes 
+ * to standard output, and keyboard input is read from standard input.
  *  
  * @author Ronald Chen
  */
-public class BasicJ extends JFrame {
+public class BasicJ {
 
     
 	public static final int black       = Colors.black;
@@ -75,12 +92,45 @@ public class BasicJ extends JFrame {
     public static final double PI = Math.PI;
     public static final double E = Math.E;
     
+    /**
+     * The number of BasicJ programs created, for naming their MBeans.
+     * 
+     * @see RenderStatsMXBean
+     */
+    private static final AtomicInteger instances = new AtomicInteger();
+    
     /**
      * The inital flush rate.
      * 
      * @see #autoFlush(long)
      */
     private static final long INITAL_FLUSHRATE = 250;
+
+    /**
+     * The number of characters the streaming print commands read at a time.
+     *
+     * @see #print(Reader)
+     */
+    private static final int PRINT_CHUNK = 8192;
+
+    /**
+     * The longest the streaming print commands wait for a screenful to be
+     * painted, in nanoseconds, so a hidden window does not stop them.
+     *
+     * @see #print(Reader)
+     */
+    private static final long PRINT_CHUNK_WAIT = 100000000L;
+	
+	/**
+	 * The window showing the screen, or null when running headless.
+	 */
+	private JFrame frame;
+	
+	/**
+	 * The standard input, for keyboard commands when running headless.
+	 * Created on first use.
+	 */
+	private BufferedReader stdin;
 	
 	/**
 	 * The screen object that implements visual and event commands.
@@ -90,11 +140,12 @@ public class BasicJ extends JFrame {
 	private Screen scr;
     
     /**
-     * The auto flush timer.
+     * Schedules the auto flushes, and merges flushes that come too fast.
      * 
      * @see #autoFlush(long)
+     * @see #flush()
      */
-    private Timer autoFlusher;
+    private FlushScheduler flusher;
     
     /**
      * This is true when mutex is waiting using wait().
@@ -129,31 +180,117 @@ public class BasicJ extends JFrame {
      * This saves the user's zoom level before it was overrided.
      */
     private int userZoom;
+    
+    /**
+     * The System.nanoTime() the last frame was due.
+     * 
+     * @see #nextFrame(int)
+     */
+    private long frameDeadline;
+    
+    /**
+     * The nanoseconds between frames, or 0 before the first frame.
+     * 
+     * @see #nextFrame(int)
+     */
+    private long framePeriod;
+    
+    /**
+     * The number of frames that were not ready in time.
+     * 
+     * @see #nextFrame(int)
+     */
+    private long missedFrames;
+    
+    /**
+     * The time pause and nextFrame wait on.
+     * 
+     * @see #setClock(Clock)
+     */
+    private Clock clock = Clock.SYSTEM;
 	
 	/**
 	 * Creates a new BasicJ program and sets the title.
 	 * This constructor is usually called by <code>super(title)</code> by the 
 	 * extending class.
-	 * @param title the title on the JFrame
+	 * @param title the title on the window
 	 */
 	public BasicJ(String title) {
-		super(((title.equals(""))?"":title + " - ") + "BasicJ");
-		setDefaultCloseOperation(EXIT_ON_CLOSE);
-		setResizable(false);
+        isWaiting = false;
+        hasInput = false;
+        lastKey = -1;
+        mutex = new Object();
+		scr = new Screen();
+		flusher = new FlushScheduler(scr);
+		registerStats();
+		if(!isHeadless()) {
+		    createFrame(((title.equals(""))?"":title + " - ") + "BasicJ");
+		}
+	}
+	
+	/**
+	 * Registers the RenderStatsMXBean of this program, if the program is
+	 * run with <code>-Dbasicj.stats=true</code>.
+	 * Monitoring is optional, so failing to register only prints a warning.
+	 */
+	private void registerStats() {
+	    if(!Boolean.getBoolean("basicj.stats")) {
+	        return;
+	    }
+	    try {
+	        ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new StatsBean(scr), RenderStatsMXBean.class, true), 
+	                new ObjectName("basicj:type=RenderStats,id=" + instances.incrementAndGet()));
+	    } catch(Exception e) {
+	        System.err.println("BasicJ: the render statistics could not be registered with JMX: " + e);
+	    }
+	}
+	
+	/**
+	 * The RenderStatsMXBean of a program.
+	 * The bean stays registered for the life of the JVM, so it only holds
+	 * the Screen weakly.  A finished program and its buffers can still be
+	 * collected, and then the stats are null.
+	 */
+	static final class StatsBean implements RenderStatsMXBean {
+	    
+	    private final WeakReference<Screen> screen;
+	    
+	    StatsBean(Screen screen) {
+	        this.screen = new WeakReference<Screen>(screen);
+	    }
+	    
+	    public RenderStats getStats() {
+	        Screen s = screen.get();
+	        return (s == null)?null:s.stats();
+	    }
+	}
+	
+	/**
+	 * Returns true if no window should be opened.
+	 * 
+	 * @see BasicJ
+	 */
+	static boolean isHeadless() {
+	    return GraphicsEnvironment.isHeadless() || Boolean.getBoolean("basicj.headless");
+	}
+	
+	/**
+	 * Opens the window showing the screen, with its menu.
+	 */
+	private void createFrame(String title) {
+		frame = new JFrame(title);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setResizable(false);
         
         // use the system's look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch(Exception e) {
         }
-        SwingUtilities.updateComponentTreeUI(this);
+        SwingUtilities.updateComponentTreeUI(frame);
         
         // keyboard events
-        isWaiting = false;
-        hasInput = false;
-        lastKey = -1;
-        mutex = new Object();
-        addKeyListener(new KeyListener() {
+        frame.addKeyListener(new KeyListener() {
             public void keyPressed(KeyEvent e) {
             }
             public void keyReleased(KeyEvent e) {
@@ -249,7 +386,7 @@ public class BasicJ extends JFrame {
         popup.add(jm);
         
         // mouse button events
-        addMouseListener(new MouseListener() {
+        frame.addMouseListener(new MouseListener() {
             public void mouseClicked(MouseEvent e) {
             }
             
@@ -270,13 +407,19 @@ public class BasicJ extends JFrame {
             
         });
         
-		scr = new Screen();
-		add(scr);
+		frame.add(scr);
         
         autoFlush(INITAL_FLUSHRATE);
 		
-		pack();
-		setVisible(true);
+		frame.pack();
+		frame.setVisible(true);
+	}
+	
+	/**
+	 * Returns the window showing the screen, or null when running headless.
+	 */
+	public JFrame getFrame() {
+	    return frame;
 	}
 	
 	/**
@@ -300,6 +443,115 @@ public class BasicJ extends JFrame {
 	 */
 	public void print(String s) {
 		scr.print(s);
+		if(frame == null) {
+		    System.out.print(s);
+		}
+	}
+	
+	/**
+	 * Prints all the text of a file.
+	 * See print(Reader) for how it is shown.
+	 * @param filename the name of the text file
+	 */
+	public void printFile(String filename) {
+        Reader in;
+        try {
+            in = new FileReader(filename);
+        } catch(IOException e) {
+            System.err.println("--ERROR--    printFile(\"" + filename + "\"), \"" + filename + "\" could not be opened.  Try the name of a text file.");
+            return;
+        }
+        try {
+            printChunks("printFile(\"" + filename + "\")", in);
+        } finally {
+            try {
+                in.close();
+            } catch(IOException e) {
+            }
+        }
+	}
+	
+	/**
+	 * Prints all the text read from in, until its end.
+	 * The text is printed a screenful at a time, and each screenful waits
+	 * until it has been painted.  So every line is shown, and the text 
+	 * moves by at most one screen per frame.  Only the lines on the screen 
+	 * are kept, so the text can be much bigger than memory.  Lines may end
+	 * in "\n", "\r\n" or "\r", they are all printed as "\n".  in is not 
+	 * closed.
+	 * @param in the text to be printed
+	 */
+	public void print(Reader in) {
+        printChunks("print(reader)", in);
+	}
+	
+	/**
+	 * Prints all the text read from in, until its end.
+	 * The bytes are read as text in the default character set, see 
+	 * print(Reader).  in is not closed.
+	 * @param in the text to be printed
+	 */
+	public void print(InputStream in) {
+        printChunks("print(stream)", new InputStreamReader(in));
+	}
+	
+	/**
+	 * Prints in a screenful at a time, for the streaming print commands.
+	 * A screenful is as many lines as the screen shows, counting a line at
+	 * each newline and where a long line wraps.  Waits for each screenful 
+	 * to be painted, except when headless, where nothing is ever painted.
+	 */
+	private void printChunks(String command, Reader in) {
+        char[] chunk = new char[PRINT_CHUNK];
+        int rows = scr.textRows();
+        int columns = scr.textColumns();
+        int lines = 0;
+        int column = 0;
+        boolean cr = false;
+        try {
+            for(int n = in.read(chunk); n != -1; n = in.read(chunk)) {
+                // the line ends are changed to '\n' in place, end is where
+                // the changed text ends
+                int start = 0;
+                int end = 0;
+                for(int i = 0; i < n; i++) {
+                    char c = chunk[i];
+                    if(c == '\n' && cr) {
+                        // the rest of a "\r\n", the '\r' was printed as '\n'
+                        cr = false;
+                        continue;
+                    }
+                    cr = c == '\r';
+                    if(cr) {
+                        c = '\n';
+                    }
+                    chunk[end++] = c;
+                    if(c == '\n' || ++column == columns) {
+                        column = 0;
+                        lines++;
+                    }
+                    if(lines == rows) {
+                        print(new String(chunk, start, end - start));
+                        start = end;
+                        lines = 0;
+                        if(frame != null) {
+                            long shown = scr.getPublishedFrames();
+                            scr.flush();
+                            scr.awaitPainted(shown + 1, PRINT_CHUNK_WAIT);
+                        }
+                    }
+                }
+                if(start < end) {
+                    // the rest of the screenful is in the next chunk
+                    print(new String(chunk, start, end - start));
+                }
+            }
+        } catch(IOException e) {
+            System.err.println("--ERROR--    " + command + ", the text could not be read: " + e.getMessage());
+        }
+        if(frame != null) {
+            scr.flush();
+        }
 	}
 	
 	/**
@@ -362,7 +614,7 @@ public class BasicJ extends JFrame {
 	 * @param s the string to be printed
 	 */
 	public void println(String s) {
-		scr.print(s + "\n");
+		print(s + "\n");
 	}
 	
 	/**
@@ -416,7 +668,7 @@ public class BasicJ extends JFrame {
 	/**
 	 * Sets the screen size.
 	 * The screen size is defined by the inner component, not the size of the 
-	 * JFrame.  The default screen size is (500, 500).
+	 * window.  The default screen size is (500, 500).
 	 * @param width the width must be greater than 0
 	 * @param height the height must be greater than 0
 	 */
@@ -430,7 +682,9 @@ public class BasicJ extends JFrame {
             return;
         }
 		scr.screen(width, height);
-        pack();
+        if(frame != null) {
+            frame.pack();
+        }
         flush();
 	}
 	
@@ -470,7 +724,16 @@ public class BasicJ extends JFrame {
             System.err.println("--ERROR--    color(" + r + ", " + g + ", " + b + "), " + b + " is out of range.  Try a number between 0 and 255 instead.");
             return;
         }
-		scr.color(new Color(r, g, b));
+		scr.color(rgb(r, g, b));
+	}
+	
+	/**
+	 * Returns the color with the RGB components r, g, and b.
+	 * Each paramter has a valid range of 0 to 255, higher bits are ignored.
+	 * The result is used by the points command.
+	 */
+	public static int rgb(int r, int g, int b) {
+        return ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
 	}
 	
 	/**
@@ -478,7 +741,7 @@ public class BasicJ extends JFrame {
 	 * The parameter is a named color.  See the public statics.
 	 */
 	public void color(int c) {
-		scr.color(Colors.toColor(c));
+		scr.color(Colors.toColor(c).getRGB());
 	}
     
     /**
@@ -527,6 +790,36 @@ public class BasicJ extends JFrame {
 	public void clear(int c) {
 		scr.clear(Colors.toColor(c));
 	}
+
+	/**
+	 * Sets the layer that draw commands draw on.
+	 * There are 8 layers, numbered 0 to 7, and layer 0 is used until this is
+	 * called.  Higher layers are shown over lower ones, and all of them over
+	 * the printed text.  A layer that stays unchanged for a few frames is
+	 * not composed again, so draw a static background on a low layer once
+	 * and redraw only the moving things on a higher layer.
+	 *
+	 * @see #clearLayer(int)
+	 */
+	public void layer(int n) {
+        if(n < 0 || n >= Screen.LAYERS) {
+            System.err.println("--ERROR--    layer(" + n + "), " + n + " is out of range.  Try a number between 0 and " + (Screen.LAYERS - 1) + ".");
+            return;
+        }
+		scr.layer(n);
+	}
+
+	/**
+	 * Clears layer n to transparent.
+	 * The other layers and the printed text are unchanged.
+	 */
+	public void clearLayer(int n) {
+        if(n < 0 || n >= Screen.LAYERS) {
+            System.err.println("--ERROR--    clearLayer(" + n + "), " + n + " is out of range.  Try a number between 0 and " + (Screen.LAYERS - 1) + ".");
+            return;
+        }
+		scr.clearLayer(n);
+	}
 	
 	/**
 	 * Draws a pixel.
@@ -536,6 +829,120 @@ public class BasicJ extends JFrame {
 		scr.point(x, y);
 	}
 	
+	/**
+	 * Draws many pixels at once.
+	 * Pixel i is drawn at (xs[i], ys[i]) for i from 0 to count - 1.  If rgb 
+	 * is null, all pixels are drawn with the color last set by the color 
+	 * command.  Otherwise pixel i is drawn with the color rgb[i], see the 
+	 * rgb command.
+	 * This is much faster than calling color and point for every pixel.
+	 */
+	public void points(int[] xs, int[] ys, int[] rgb, int count) {
+        if(count < 0 || count > xs.length || count > ys.length || (rgb != null && count > rgb.length)) {
+            System.err.println("--ERROR--    points(xs, ys, rgb, " + count + "), " + count + " is out of range.  Try a number between 0 and the length of the arrays.");
+            return;
+        }
+		scr.points(xs, ys, rgb, count);
+	}
+	
+	/**
+	 * Loads an image file to draw with the sprite command.
+	 * The file can be a BMP, PNG, GIF or JPEG image.  Transparent pixels of
+	 * PNG and GIF images are not drawn.  Each file is only loaded once, 
+	 * loading it again returns the same sprite.
+	 * 
+	 * @return the sprite, or -1 if the file could not be loaded
+	 * @see #sprite(int, int, int)
+	 */
+	public int loadSprite(String filename) {
+        return loadSprite("loadSprite(\"" + filename + "\")", filename, Sprite.NO_COLOR_KEY);
+	}
+	
+	/**
+	 * Loads an image file to draw with the sprite command, where pixels of
+	 * a named color are transparent.  See the public statics.
+	 * 
+	 * @return the sprite, or -1 if the file could not be loaded
+	 */
+	public int loadSprite(String filename, int c) {
+        return loadSprite("loadSprite(\"" + filename + "\", " + c + ")", filename, Colors.toColor(c).getRGB() & 0xFFFFFF);
+	}
+	
+	/**
+	 * Loads an image file to draw with the sprite command, where pixels of
+	 * the color with RGB components r, g and b are transparent.  Each 
+	 * component has a valid range of 0 to 255.
+	 * 
+	 * @return the sprite, or -1 if the file could not be loaded
+	 */
+	public int loadSprite(String filename, int r, int g, int b) {
+        String command = "loadSprite(\"" + filename + "\", " + r + ", " + g + ", " + b + ")";
+        if(r < 0 || r > 255) {
+            System.err.println("--ERROR--    " + command + ", " + r + " is out of range.  Try a number between 0 and 255 instead.");
+            return -1;
+        }
+        if(g < 0 || g > 255) {
+            System.err.println("--ERROR--    " + command + ", " + g + " is out of range.  Try a number between 0 and 255 instead.");
+            return -1;
+        }
+        if(b < 0 || b > 255) {
+            System.err.println("--ERROR--    " + command + ", " + b + " is out of range.  Try a number between 0 and 255 instead.");
+            return -1;
+        }
+        return loadSprite(command, filename, rgb(r, g, b));
+	}
+	
+	private int loadSprite(String command, String filename, int colorKey) {
+        try {
+            return scr.loadSprite(filename, colorKey);
+        } catch(IOException e) {
+            System.err.println("--ERROR--    " + command + ", \"" + filename + "\" could not be loaded.  Try the name of an image file.");
+            return -1;
+        }
+	}
+	
+	/**
+	 * Draws a sprite.
+	 * The sprite is drawn with its top left corner at (x, y).
+	 * 
+	 * @param sprite a sprite returned by loadSprite
+	 */
+	public void sprite(int sprite, int x, int y) {
+        if(!scr.isSprite(sprite)) {
+            System.err.println("--ERROR--    sprite(" + sprite + ", " + x + ", " + y + "), " + sprite + " is not a sprite.  Try a number returned by loadSprite.");
+            return;
+        }
+		scr.sprite(sprite, x, y);
+	}
+	
+	/**
+	 * Colors every pixel of the screen with a function.
+	 * Pixel (x, y) is drawn with the color f.rgb(x, y), see the rgb command.
+	 * The pixels are computed on all processors at once, so this is much 
+	 * faster than calling color and point for every pixel.
+	 */
+	public void shade(PixelFunction f) {
+		scr.shade(f, 0, 0, scr.width(), scr.height());
+	}
+	
+	/**
+	 * Colors every pixel of a rectangle with a function.
+	 * The rectangle has its top left corner at (x, y), and is width pixels
+	 * wide and height pixels high.  Pixel (x, y) is drawn with the color 
+	 * f.rgb(x, y), see the rgb command.
+	 */
+	public void shade(int x, int y, int width, int height, PixelFunction f) {
+        if(width < 0) {
+            System.err.println("--ERROR--    shade(" + x + ", " + y + ", " + width + ", " + height + ", f), " + width + " is out of range.  Try a number greater or equal to 0.");
+            return;
+        }
+        if(height < 0) {
+            System.err.println("--ERROR--    shade(" + x + ", " + y + ", " + width + ", " + height + ", f), " + height + " is out of range.  Try a number greater or equal to 0.");
+            return;
+        }
+		scr.shade(f, x, y, width, height);
+	}
+	
 	/**
 	 * Draws a line.
 	 * A line is drawn between the end points (x0, y0) and (x1, y1).  The 
@@ -554,6 +961,50 @@ public class BasicJ extends JFrame {
 		scr.circle(x, y, r);
 	}
 	
+	/**
+	 * Draws a filled circle.
+	 * A filled circle is drawn with (x, y) as its center point and with 
+	 * radius r.  The color of the circle is the color last set by the color
+	 * command.
+	 */
+	public void fillCircle(int x, int y, int r) {
+		scr.fillCircle(x, y, r);
+	}
+
+	/**
+	 * Draws a filled rectangle.
+	 * The top left corner of the rectangle is at (x, y) and it is width
+	 * pixels wide and height pixels high.  The color of the rectangle is the
+	 * color last set by the color command.
+	 */
+	public void fillRect(int x, int y, int width, int height) {
+        if(width < 0) {
+            System.err.println("--ERROR--    fillRect(" + x + ", " + y + ", " + width + ", " + height + "), " + width + " is out of range.  Try a number greater than or equal to 0.");
+            return;
+        }
+        if(height < 0) {
+            System.err.println("--ERROR--    fillRect(" + x + ", " + y + ", " + width + ", " + height + "), " + height + " is out of range.  Try a number greater than or equal to 0.");
+            return;
+        }
+		scr.fillRect(x, y, width, height);
+	}
+
+	/**
+	 * Draws a filled polygon.
+	 * The polygon has count corners, corner i is at (xs[i], ys[i]) for i
+	 * from 0 to count - 1, and the last corner is joined to the first.
+	 * Where the polygon crosses itself, the areas covered an even number of
+	 * times are not filled.  The color of the polygon is the color last set
+	 * by the color command.
+	 */
+	public void fillPolygon(int[] xs, int[] ys, int count) {
+        if(count < 0 || count > xs.length || count > ys.length) {
+            System.err.println("--ERROR--    fillPolygon(xs, ys, " + count + "), " + count + " is out of range.  Try a number between 0 and the length of the arrays.");
+            return;
+        }
+		scr.fillPolygon(xs, ys, count);
+	}
+	
 	/**
 	 * Draws text.
 	 * The String s is drawn at (x, y), where x, y is the top corner of the 
@@ -565,11 +1016,18 @@ public class BasicJ extends JFrame {
 	}
     
     /**
-     * Renders all text and draw commands immediately.
+     * Renders all text and draw commands.
+     * The first flush in a frame (1/60 of a second) publishes before this
+     * returns.  Flushes after it in the same frame are merged into one, 
+     * published at the end of the frame.  With the display list on, the 
+     * frame is published by the render thread once it has drawn every 
+     * command so far, and this does not wait for it.  Auto flushing skips
+     * its next flush if it comes within one auto flush period of this one.
      *
+     * @see #nextFrame(int)
      */
     public void flush() {
-        scr.flush();
+        flusher.flush();
     }
     
     /**
@@ -578,22 +1036,37 @@ public class BasicJ extends JFrame {
      * manually (needed for animation/performance) set the rate to 0, and use
      * the flush command.
      *  
+     * When running headless there is nothing to show, so auto flushing is 
+     * always off.
+     *  
      * @param rate units in milliseconds and must be non-negative
      * @see #flush()
      */
     public void autoFlush(long rate) {
-        if(rate > 0) {
-            autoFlusher = new Timer();
-            autoFlusher.scheduleAtFixedRate(new AutoFlushTask(), 0, rate);
-        } else if(rate == 0) {
-            if(autoFlusher != null) {
-                autoFlusher.cancel();
-            }
+        if(rate > 0 && frame == null) {
+            return;
+        }
+        if(rate >= 0) {
+            flusher.setRate(rate);
         } else {
             System.err.println("--ERROR--    autoFlush(" + rate + "), " + rate + " is out of range.  Try a number greater or equal to 0.");
         }
     }
     
+    /**
+     * Turns the display list on or off.
+     * While the display list is on, point, line, circle, fillCircle, text
+     * and print only record the command and return, and a separate render 
+     * thread draws them.  This lets the drawing happen at the same time as the 
+     * rest of the program, which is faster on a computer with more than 
+     * one processor.  The display list is off by default.
+     * 
+     * @see #flush()
+     */
+    public void displayList(boolean on) {
+        scr.displayList(on);
+    }
+    
     /**
      * Sets the zoom factor.
      * @param factor must be greater than 1
@@ -604,7 +1077,9 @@ public class BasicJ extends JFrame {
             return;
         }
         scr.zoom(factor);
-        pack();
+        if(frame != null) {
+            frame.pack();
+        }
         flush();
     }
     
@@ -1150,8 +1625,17 @@ public class BasicJ extends JFrame {
      * Blocks until input is received.  Currently only supports regular
      * letters, digits, symbols, esc, backspace, delete, enter, and space.
      * Arrow keys for example are not implemented yet.
+     * When running headless, the next character is read from standard 
+     * input instead, and -1 is returned at the end of the input.
      */
     public int keypressed() {
+        if(frame == null) {
+            try {
+                return stdin().read();
+            } catch(IOException e) {
+                return -1;
+            }
+        }
         synchronized(mutex) {
             isWaiting = true;
             try {
@@ -1164,10 +1648,35 @@ public class BasicJ extends JFrame {
         return lastKey;
     }
     
+    /**
+     * Returns the standard input reader, creating it on first use.
+     */
+    private BufferedReader stdin() {
+        if(stdin == null) {
+            stdin = new BufferedReader(new InputStreamReader(System.in));
+        }
+        return stdin;
+    }
+    
     /**
      * Prompts the user for input.
+     * When running headless, a line is read from standard input instead, 
+     * and the empty string is returned at the end of the input.
      */
     public String input() {
+        if(frame == null) {
+            String line;
+            try {
+                line = stdin().readLine();
+            } catch(IOException e) {
+                line = null;
+            }
+            if(line == null) {
+                line = "";
+            }
+            scr.print(line + "\n");
+            return line;
+        }
         StringBuffer sb = new StringBuffer();
         int nextChar = -1;
         while(nextChar != KeyEvent.VK_ENTER) {
@@ -1210,31 +1719,106 @@ public class BasicJ extends JFrame {
     
     /**
      * Pauses execution for some milliseconds.
+     * An interrupt ends the pause early.
      */
     public void pause(long milliseconds) {
-        synchronized(mutex) {
-            try {
-                mutex.wait(milliseconds);
-            } catch(InterruptedException e) {
+        // capped so the nanoseconds do not overflow, waitUntil compares
+        // times by their difference, so the deadline itself may wrap
+        waitUntil(clock.nanoTime() + 1000000L*Math.min(milliseconds, Long.MAX_VALUE/1000000L));
+    }
+    
+    /**
+     * Waits until the clock reaches deadline, or the thread is interrupted.
+     * The interrupt is cleared, like the InterruptedException of a wait
+     * would be, since parking again with the interrupt set returns at once.
+     */
+    private void waitUntil(long deadline) {
+        for(long left = deadline - clock.nanoTime(); left > 0; left = deadline - clock.nanoTime()) {
+            if(Thread.interrupted()) {
+                return;
             }
+            clock.park(left);
         }
     }
     
     /**
-     * Saves the current view to file.
+     * Sets the clock pause and nextFrame wait on, for testing.
      */
-    public void save(String filename) {
-        scr.save(filename);
+    void setClock(Clock clock) {
+        this.clock = clock;
     }
     
     /**
-     * Simple TimerTask for auto flushing.
+     * Shows the next frame of an animation.
+     * Waits until the next frame is due and then flushes, so exactly one 
+     * frame is shown every 1/fps seconds.  Frames are due at fixed times, 
+     * so the animation does not drift even when drawing a frame takes a 
+     * different time each frame.  If drawing a frame takes too long, the 
+     * frame is shown at once, and it is counted by missedFrames.  An 
+     * interrupt also shows the frame at once.
+     * 
+     * The first call turns auto flushing off.  A typical animation is:
+     * <pre><code>
+     * while(true) {
+     *   clear();
+     *   &lt;draw the frame&gt;
+     *   nextFrame(60);
+     * }
+     * </code></pre>
      * 
-     * @author Ronald Chen
+     * @param fps the number of frames per second, must be greater than 0
+     * @see #missedFrames()
      */
-    class AutoFlushTask extends TimerTask {
-        public void run() {
-            flush();
+    public void nextFrame(int fps) {
+        if(fps <= 0) {
+            System.err.println("--ERROR--    nextFrame(" + fps + "), " + fps + " is out of range.  Try a number greater than 0.");
+            return;
+        }
+        long period = 1000000000L/fps;
+        long now = clock.nanoTime();
+        if(framePeriod == 0) {
+            autoFlush(0);
         }
+        if(period != framePeriod) {
+            framePeriod = period;
+            frameDeadline = now;
+        } else {
+            frameDeadline += period;
+            long late = now - frameDeadline;
+            if(late > 0) {
+                // skip the frames there was no time for, to catch up
+                long skipped = late/period;
+                missedFrames += 1 + skipped;
+                frameDeadline += skipped*period;
+            } else {
+                waitUntil(frameDeadline);
+            }
+        }
+        scr.flush();
+    }
+    
+    /**
+     * Returns the number of frames that were not ready when they were due.
+     * 
+     * @see #nextFrame(int)
+     */
+    public long missedFrames() {
+        return missedFrames;
+    }
+    
+    /**
+     * Returns what has been drawn so far and how long it took.
+     * Counting is always on and costs next to nothing.  The same numbers
+     * are available over JMX, see RenderStatsMXBean.
+     */
+    public RenderStats stats() {
+        return scr.stats();
+    }
+    
+    /**
+     * Saves the current view to file.
+     */
+    public void save(String filename) {
+        scr.save(filename);
     }
 }
@@ -0,0 +1,85 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A few images that are no longer used, kept to be used again.
+ * 
+ * A program that switches between a few screen sizes gets the buffers of
+ * the earlier sizes back instead of allocating new ones.  The pool is
+ * bounded, when it is full the oldest image is dropped.  The pixels of an 
+ * image taken from the pool are left as they were.
+ * 
+ * Not thread safe.
+ * 
+ * @author Ronald Chen
+ */
+final class BufferPool {
+
+    /**
+     * The number of images kept.
+     */
+    static final int CAPACITY = 8;
+    
+    /**
+     * The kept images, oldest first.
+     */
+    private final BufferedImage[] images = new BufferedImage[CAPACITY];
+    
+    private int count;
+    
+    /**
+     * Returns a kept image of this size and type, or a new one if there is
+     * none.
+     */
+    public BufferedImage get(int width, int height, int type) {
+        for(int i = count - 1; i >= 0; i--) {
+            BufferedImage img = images[i];
+            if(img.getWidth() == width && img.getHeight() == height && img.getType() == type) {
+                System.arraycopy(images, i + 1, images, i, count - i - 1);
+                images[--count] = null;
+                return img;
+            }
+        }
+        return new BufferedImage(width, height, type);
+    }
+    
+    /**
+     * Keeps img to be returned by get.
+     * Does nothing if img is null.
+     */
+    public void put(BufferedImage img) {
+        if(img == null) {
+            return;
+        }
+        if(count == CAPACITY) {
+            System.arraycopy(images, 1, images, 0, count - 1);
+            count--;
+        }
+        images[count++] = img;
+    }
+    
+    /**
+     * Returns the number of kept images.
+     */
+    public int size() {
+        return count;
+    }
+}
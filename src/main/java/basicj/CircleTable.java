@@ -0,0 +1,123 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.*;
+
+/**
+ * Precomputed pixel offsets of a circle of a given radius.
+ * The offsets are computed once with the midpoint circle algorithm and are 
+ * kept in a small LRU cache, so drawing many circles of the same radius only
+ * costs copying the pixels.
+ * 
+ * @author Ronald Chen
+ */
+final class CircleTable {
+
+    /**
+     * The largest radius that is tabled.
+     * Larger circles are left to Java2D, since their tables would be huge.
+     */
+    public static final int MAX_RADIUS = 16384;
+    
+    /**
+     * The number of radii kept in the cache.
+     */
+    private static final int CACHE_SIZE = 32;
+    
+    /**
+     * The cache of tables by radius, in least recently used order.
+     */
+    private static final Map<Integer, CircleTable> cache = new LinkedHashMap<Integer, CircleTable>(CACHE_SIZE, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer, CircleTable> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    
+    /**
+     * The radius of the circle.
+     */
+    final int radius;
+    
+    /**
+     * The points of the second octant, from (0, radius) to the diagonal.
+     * Point i is (octant[2*i], octant[2*i + 1]).  The other seven octants
+     * are reflections of these points.
+     */
+    final int[] octant;
+    
+    /**
+     * The number of points in octant.
+     */
+    final int octantLength;
+    
+    /**
+     * The half width of the filled circle for each row.
+     * Row dy from the center covers -span[dy] to span[dy] inclusive.
+     */
+    final int[] span;
+    
+    /**
+     * Returns the table of radius, computing it if it is not cached.
+     * 
+     * @param radius must be between 1 and MAX_RADIUS
+     */
+    public static CircleTable get(int radius) {
+        Integer key = Integer.valueOf(radius);
+        synchronized(cache) {
+            CircleTable t = cache.get(key);
+            if(t == null) {
+                t = new CircleTable(radius);
+                cache.put(key, t);
+            }
+            return t;
+        }
+    }
+    
+    /**
+     * Computes the table with the midpoint circle algorithm.
+     */
+    private CircleTable(int radius) {
+        this.radius = radius;
+        int[] points = new int[2*(radius + 1)];
+        int n = 0;
+        span = new int[radius + 1];
+        
+        int x = 0;
+        int y = radius;
+        int d = 1 - radius;
+        while(x <= y) {
+            points[2*n] = x;
+            points[2*n + 1] = y;
+            n++;
+            // (x, y) and its reflection (y, x) are the widest points of their rows
+            span[y] = Math.max(span[y], x);
+            span[x] = Math.max(span[x], y);
+            if(d < 0) {
+                d += 2*x + 3;
+            } else {
+                d += 2*(x - y) + 5;
+                y--;
+            }
+            x++;
+        }
+        octantLength = n;
+        octant = new int[2*n];
+        System.arraycopy(points, 0, octant, 0, 2*n);
+    }
+}
@@ -0,0 +1,57 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The time that frame pacing and pause wait on.
+ * 
+ * Programs always use SYSTEM.  Tests use a clock of their own, so pacing 
+ * can be checked without waiting in real time.
+ * 
+ * @see BasicJ#nextFrame(int)
+ * @author Ronald Chen
+ */
+interface Clock {
+
+    /**
+     * System.nanoTime() and LockSupport.parkNanos.
+     */
+    Clock SYSTEM = new Clock() {
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+        
+        public void park(long nanos) {
+            LockSupport.parkNanos(nanos);
+        }
+    };
+    
+    /**
+     * Returns the current time in nanoseconds, only meaningful as a 
+     * difference to another time of the same clock.
+     */
+    long nanoTime();
+    
+    /**
+     * Waits up to nanos nanoseconds.  May return early, and returns at once
+     * if the thread is interrupted.
+     */
+    void park(long nanos);
+}
@@ -0,0 +1,149 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Rectangle;
+
+/**
+ * The bounding box of everything drawn since it was last taken.
+ * 
+ * The thread running the draw commands adds to the region, and the thread
+ * publishing a frame takes it.  Every method is synchronized, which costs 
+ * next to nothing when uncontended and little next to composing a frame, 
+ * so each area is returned by exactly one take.
+ * 
+ * @author Ronald Chen
+ */
+final class DirtyRegion {
+
+    /**
+     * The bounding box, the max values are exclusive.
+     */
+    private int minX, minY, maxX, maxY;
+    
+    /**
+     * The width of the area that is tracked.
+     */
+    private int width;
+    
+    /**
+     * The height of the area that is tracked.
+     */
+    private int height;
+    
+    /**
+     * Creates an empty region for an area of width by height.
+     */
+    public DirtyRegion(int width, int height) {
+        setSize(width, height);
+        reset();
+    }
+    
+    /**
+     * Sets the size of the tracked area.
+     * Everything returned by take() is clipped to this size.
+     */
+    public synchronized void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * Adds the rectangle from (x0, y0) to (x1, y1) inclusive.
+     */
+    public synchronized void add(int x0, int y0, int x1, int y1) {
+        if(x0 < minX) {
+            minX = x0;
+        }
+        if(y0 < minY) {
+            minY = y0;
+        }
+        // the max values are clamped, so x1 + 1 cannot overflow
+        if(x1 >= maxX) {
+            maxX = (int) Math.min((long) x1 + 1, Integer.MAX_VALUE);
+        }
+        if(y1 >= maxY) {
+            maxY = (int) Math.min((long) y1 + 1, Integer.MAX_VALUE);
+        }
+    }
+    
+    /**
+     * Adds the whole area.
+     */
+    public synchronized void addAll() {
+        add(0, 0, width - 1, height - 1);
+    }
+    
+    /**
+     * Returns the region without starting a new one.
+     * 
+     * @return the dirty region clipped to the area, or null if it is empty
+     */
+    public synchronized Rectangle peek() {
+        Rectangle r = new Rectangle();
+        return clip(r)?r:null;
+    }
+    
+    /**
+     * Returns the region and starts a new one.
+     * 
+     * @return the dirty region clipped to the area, or null if it is empty
+     */
+    public Rectangle take() {
+        Rectangle r = new Rectangle();
+        return take(r)?r:null;
+    }
+    
+    /**
+     * Sets into to the region and starts a new one, without allocating.
+     * 
+     * @return false if the region is empty, then into is unchanged
+     */
+    public synchronized boolean take(Rectangle into) {
+        boolean taken = clip(into);
+        reset();
+        return taken;
+    }
+    
+    /**
+     * Empties the region.
+     */
+    private void reset() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+    
+    /**
+     * Sets into to the region clipped to the area.
+     * 
+     * @return false if the clipped region is empty, then into is unchanged
+     */
+    private boolean clip(Rectangle into) {
+        int x0 = Math.max(0, minX);
+        int y0 = Math.max(0, minY);
+        int x1 = Math.min(width, maxX);
+        int y1 = Math.min(height, maxY);
+        if(x0 >= x1 || y0 >= y1) {
+            return false;
+        }
+        into.setBounds(x0, y0, x1 - x0, y1 - y0);
+        return true;
+    }
+}
@@ -0,0 +1,428 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draw commands recorded by the program and drawn by a render thread.
+ *
+ * Each command is stored as an opcode followed by its int operands in a
+ * preallocated ring, so recording a command costs a few array writes.  The
+ * render thread takes everything recorded so far and draws it on the Screen
+ * in one batch, while the program carries on.  A batch is drawn holding the
+ * Screen's publishLock, so no frame is published half way through one.
+ *
+ * Only one thread, the program, may record commands.  Any thread may call
+ * flush() and finish().  The render thread only sleeps when there is
+ * nothing to do, and the program only waits when the ring is full.
+ *
+ * @author Ronald Chen
+ */
+final class DisplayList implements Runnable {
+
+    static final int COLOR = 0;
+    static final int THICKNESS = 1;
+    static final int POINT = 2;
+    static final int LINE = 3;
+    static final int CIRCLE = 4;
+    static final int FILL_CIRCLE = 5;
+    static final int TEXT = 6;
+    static final int SPRITE = 7;
+    static final int FILL_RECT = 8;
+    static final int LAYER = 9;
+    static final int CLEAR_LAYER = 10;
+    static final int PRINT = 11;
+    static final int BACKSPACE = 12;
+
+    /**
+     * The number of ints in the ring, a power of 2.
+     */
+    private static final int CAPACITY = 1 << 16;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * The recorded commands.
+     */
+    private final int[] commands = new int[CAPACITY];
+
+    /**
+     * The Strings of the text and print commands, at the same index as their
+     * opcode.
+     */
+    private final String[] strings = new String[CAPACITY];
+
+    /**
+     * The number of ints ever recorded.
+     * Only the recording thread writes it.
+     */
+    private volatile long written;
+
+    /**
+     * The number of ints ever drawn.
+     * Only the render thread writes it.
+     */
+    private volatile long read;
+
+    /**
+     * True if the render thread should publish a frame after its next
+     * batch.
+     */
+    private volatile boolean flushRequested;
+
+    /**
+     * True while the render thread is parked, or about to park.
+     */
+    private volatile boolean sleeping;
+
+    /**
+     * The number of threads waiting in awaitRead().
+     * Only changed while holding the monitor.
+     */
+    private volatile int waiters;
+
+    private volatile boolean running;
+
+    private final Screen screen;
+
+    private final Thread renderThread;
+
+    /**
+     * Creates a display list that draws on screen.
+     * The render thread is not started.
+     */
+    public DisplayList(Screen screen) {
+        this.screen = screen;
+        renderThread = new Thread(this, "BasicJ render");
+        renderThread.setDaemon(true);
+    }
+
+    /**
+     * Starts the render thread.
+     */
+    public void start() {
+        running = true;
+        renderThread.start();
+    }
+
+    /**
+     * Draws everything recorded and stops the render thread.
+     */
+    public void stop() {
+        finish();
+        running = false;
+        LockSupport.unpark(renderThread);
+        try {
+            renderThread.join();
+        } catch(InterruptedException e) {
+        }
+    }
+
+    public void color(int rgb) {
+        long w = reserve(2);
+        commands[(int) (w & MASK)] = COLOR;
+        commands[(int) ((w + 1) & MASK)] = rgb;
+        commit(w + 2);
+    }
+
+    public void thickness(int width) {
+        long w = reserve(2);
+        commands[(int) (w & MASK)] = THICKNESS;
+        commands[(int) ((w + 1) & MASK)] = width;
+        commit(w + 2);
+    }
+
+    /**
+     * Records a layer command, or a clearLayer command if op is 
+     * CLEAR_LAYER.
+     */
+    public void layer(int op, int n) {
+        long w = reserve(2);
+        commands[(int) (w & MASK)] = op;
+        commands[(int) ((w + 1) & MASK)] = n;
+        commit(w + 2);
+    }
+
+    public void point(int x, int y) {
+        long w = reserve(3);
+        commands[(int) (w & MASK)] = POINT;
+        commands[(int) ((w + 1) & MASK)] = x;
+        commands[(int) ((w + 2) & MASK)] = y;
+        commit(w + 3);
+    }
+
+    public void line(int x0, int y0, int x1, int y1) {
+        long w = reserve(5);
+        commands[(int) (w & MASK)] = LINE;
+        commands[(int) ((w + 1) & MASK)] = x0;
+        commands[(int) ((w + 2) & MASK)] = y0;
+        commands[(int) ((w + 3) & MASK)] = x1;
+        commands[(int) ((w + 4) & MASK)] = y1;
+        commit(w + 5);
+    }
+
+    /**
+     * Records a circle, or a filled circle if op is FILL_CIRCLE.
+     */
+    public void circle(int op, int x, int y, int r) {
+        long w = reserve(4);
+        commands[(int) (w & MASK)] = op;
+        commands[(int) ((w + 1) & MASK)] = x;
+        commands[(int) ((w + 2) & MASK)] = y;
+        commands[(int) ((w + 3) & MASK)] = r;
+        commit(w + 4);
+    }
+
+    public void fillRect(int x, int y, int width, int height) {
+        long w = reserve(5);
+        commands[(int) (w & MASK)] = FILL_RECT;
+        commands[(int) ((w + 1) & MASK)] = x;
+        commands[(int) ((w + 2) & MASK)] = y;
+        commands[(int) ((w + 3) & MASK)] = width;
+        commands[(int) ((w + 4) & MASK)] = height;
+        commit(w + 5);
+    }
+
+    public void text(int x, int y, String s) {
+        long w = reserve(3);
+        commands[(int) (w & MASK)] = TEXT;
+        strings[(int) (w & MASK)] = s;
+        commands[(int) ((w + 1) & MASK)] = x;
+        commands[(int) ((w + 2) & MASK)] = y;
+        commit(w + 3);
+    }
+
+    public void print(String s) {
+        long w = reserve(1);
+        commands[(int) (w & MASK)] = PRINT;
+        strings[(int) (w & MASK)] = s;
+        commit(w + 1);
+    }
+
+    public void backspace(char c) {
+        long w = reserve(2);
+        commands[(int) (w & MASK)] = BACKSPACE;
+        commands[(int) ((w + 1) & MASK)] = c;
+        commit(w + 2);
+    }
+
+    public void sprite(int id, int x, int y) {
+        long w = reserve(4);
+        commands[(int) (w & MASK)] = SPRITE;
+        commands[(int) ((w + 1) & MASK)] = id;
+        commands[(int) ((w + 2) & MASK)] = x;
+        commands[(int) ((w + 3) & MASK)] = y;
+        commit(w + 4);
+    }
+
+    /**
+     * Waits until there is room for n more ints.
+     *
+     * @return the index to write the first int at
+     */
+    private long reserve(int n) {
+        long w = written;
+        if(w + n - read > CAPACITY) {
+            awaitRead(w + n - CAPACITY);
+        }
+        return w;
+    }
+
+    /**
+     * Makes everything recorded up to w visible to the render thread.
+     */
+    private void commit(long w) {
+        written = w;
+        if(sleeping) {
+            LockSupport.unpark(renderThread);
+        }
+    }
+
+    /**
+     * Asks the render thread to publish a frame once it has drawn every
+     * command recorded so far.  Does not wait.
+     */
+    public void flush() {
+        flushRequested = true;
+        LockSupport.unpark(renderThread);
+    }
+
+    /**
+     * Waits until every command recorded so far has been drawn.
+     */
+    public void finish() {
+        awaitRead(written);
+    }
+
+    /**
+     * Waits until the render thread has drawn up to index target.
+     */
+    private void awaitRead(long target) {
+        if(read >= target) {
+            return;
+        }
+        LockSupport.unpark(renderThread);
+        synchronized(this) {
+            waiters++;
+            try {
+                while(read < target && running) {
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                    }
+                }
+            } finally {
+                waiters--;
+            }
+        }
+    }
+
+    /**
+     * The render thread.
+     * Draws batches of commands until stopped.
+     */
+    public void run() {
+        long r = read;
+        while(running) {
+            // flushRequested must be read before written, so a flush sees
+            // every command recorded before it
+            boolean flush = flushRequested;
+            if(flush) {
+                flushRequested = false;
+            }
+            long w = written;
+            if(r == w && !flush) {
+                sleeping = true;
+                if(written == r && !flushRequested && running) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+                continue;
+            }
+            synchronized(screen.publishLock) {
+                screen.beginBatch();
+                while(r < w) {
+                    r += draw(r);
+                }
+                screen.endBatch();
+            }
+            read = r;
+            if(waiters > 0) {
+                synchronized(this) {
+                    notifyAll();
+                }
+            }
+            if(flush) {
+                screen.publish();
+            }
+        }
+        synchronized(this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of ints in a command with opcode op.
+     */
+    private static int size(int op) {
+        switch(op) {
+        case PRINT:
+            return 1;
+        case COLOR:
+        case THICKNESS:
+        case LAYER:
+        case CLEAR_LAYER:
+        case BACKSPACE:
+            return 2;
+        case CIRCLE:
+        case FILL_CIRCLE:
+        case SPRITE:
+            return 4;
+        case LINE:
+        case FILL_RECT:
+            return 5;
+        default:
+            return 3;
+        }
+    }
+
+    /**
+     * Draws the command at index i.
+     *
+     * @return the number of ints in the command
+     */
+    private int draw(long i) {
+        int at = (int) (i & MASK);
+        int op = commands[at];
+        int a = commands[(int) ((i + 1) & MASK)];
+        int b = commands[(int) ((i + 2) & MASK)];
+        try {
+            switch(op) {
+            case COLOR:
+                screen.drawColor(a);
+                break;
+            case THICKNESS:
+                screen.drawThickness(a);
+                break;
+            case POINT:
+                screen.drawPoint(a, b);
+                break;
+            case LINE:
+                screen.drawLine(a, b, commands[(int) ((i + 3) & MASK)], commands[(int) ((i + 4) & MASK)]);
+                break;
+            case CIRCLE:
+                screen.drawCircle(a, b, commands[(int) ((i + 3) & MASK)]);
+                break;
+            case FILL_CIRCLE:
+                screen.drawFillCircle(a, b, commands[(int) ((i + 3) & MASK)]);
+                break;
+            case FILL_RECT:
+                screen.drawFillRect(a, b, commands[(int) ((i + 3) & MASK)], commands[(int) ((i + 4) & MASK)]);
+                break;
+            case LAYER:
+                screen.drawLayer(a);
+                break;
+            case CLEAR_LAYER:
+                screen.drawClearLayer(a);
+                break;
+            case TEXT:
+                String s = strings[at];
+                strings[at] = null;
+                screen.drawText(a, b, s);
+                break;
+            case SPRITE:
+                screen.drawSprite(a, b, commands[(int) ((i + 3) & MASK)]);
+                break;
+            case PRINT:
+                String p = strings[at];
+                strings[at] = null;
+                screen.drawPrint(p);
+                break;
+            case BACKSPACE:
+                screen.drawBackspace((char) a);
+                break;
+            }
+        } catch(RuntimeException e) {
+            // one bad command must not stop the render thread, or the
+            // program would wait for it forever
+            e.printStackTrace();
+        }
+        return size(op);
+    }
+}
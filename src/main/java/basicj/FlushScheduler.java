@@ -0,0 +1,164 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a Screen publishes its frames.
+ * 
+ * All screens share one daemon timer thread.  Auto flushing is a periodic
+ * task on that thread, and changing the rate replaces the task.  The first
+ * explicit flush in a frame publishes at once, on the calling thread.  The
+ * flushes after it in the same frame are merged into one publish on the 
+ * timer thread when the frame is over, so a program flushing after every 
+ * command does not publish more frames than can be shown.  An auto flush 
+ * that comes within one period of an explicit flush is skipped, so a 
+ * program that flushes by itself does not also publish on the timer thread.
+ * Publishing when nothing was drawn only checks the Screen's dirty region, 
+ * so an idle screen costs next to nothing.
+ * 
+ * A frame is never published half drawn, the Screen holds its publishLock
+ * across every draw command and every publish.
+ * 
+ * @author Ronald Chen
+ */
+final class FlushScheduler implements Runnable {
+
+    /**
+     * The timer thread shared by every screen.
+     */
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BasicJ flush");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    
+    /**
+     * The shortest time between explicit flushes that publish, in 
+     * nanoseconds.
+     */
+    static final long FRAME_NANOS = 1000000000L/60;
+    
+    private final Screen screen;
+    
+    /**
+     * The auto flush task, or null if auto flushing is off.
+     */
+    private ScheduledFuture<?> autoFlush;
+    
+    /**
+     * The time between auto flushes in nanoseconds, or 0 if auto flushing 
+     * is off.
+     */
+    private volatile long period;
+    
+    /**
+     * The System.nanoTime() of the last explicit flush.
+     */
+    private volatile long lastFlush;
+    
+    /**
+     * The System.nanoTime() of the last explicit publish.
+     * Guarded by this.
+     */
+    private long lastPublish;
+    
+    /**
+     * True if a merged publish is scheduled on the timer.
+     * Guarded by this.
+     */
+    private boolean pending;
+    
+    /**
+     * Publishes the merged flushes, on the timer thread.
+     */
+    private final Runnable publishPending = new Runnable() {
+        public void run() {
+            synchronized(FlushScheduler.this) {
+                // cleared first, so a flush while publishing is not lost
+                pending = false;
+                lastPublish = System.nanoTime();
+            }
+            screen.flush();
+        }
+    };
+    
+    /**
+     * Creates a scheduler for screen, with auto flushing off.
+     */
+    public FlushScheduler(Screen screen) {
+        this.screen = screen;
+        lastFlush = System.nanoTime();
+        lastPublish = lastFlush - FRAME_NANOS;
+    }
+    
+    /**
+     * Sets the auto flush rate, replacing the previous one.
+     * 
+     * @param millis the time between flushes, or 0 to stop auto flushing
+     */
+    public synchronized void setRate(long millis) {
+        if(autoFlush != null) {
+            autoFlush.cancel(false);
+            autoFlush = null;
+        }
+        period = TimeUnit.MILLISECONDS.toNanos(millis);
+        if(millis > 0) {
+            autoFlush = timer.scheduleAtFixedRate(this, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Flushes now if there was no explicit publish in this frame, otherwise
+     * schedules one publish for the end of the frame.
+     */
+    public void flush() {
+        long now = System.nanoTime();
+        lastFlush = now;
+        synchronized(this) {
+            if(pending) {
+                return;
+            }
+            long wait = lastPublish + FRAME_NANOS - now;
+            if(wait > 0) {
+                pending = true;
+                timer.schedule(publishPending, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+            lastPublish = now;
+        }
+        screen.flush();
+    }
+    
+    /**
+     * An auto flush, skipped if there was an explicit flush in the last
+     * period.
+     */
+    public void run() {
+        if(System.nanoTime() - lastFlush >= period) {
+            screen.flush();
+        }
+    }
+}
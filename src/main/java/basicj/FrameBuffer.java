@@ -0,0 +1,82 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * One complete frame, as it is shown on screen.
+ * 
+ * The Screen has three frames.  At any time one is owned by the thread that
+ * publishes frames, one is owned by the event dispatch thread that paints 
+ * them, and one is waiting to be picked up by either.  A frame is only ever
+ * written by its owner, so a frame is never painted while it is changing.
+ * 
+ * @see Screen#publish()
+ * @author Ronald Chen
+ */
+final class FrameBuffer {
+
+    /**
+     * The image of the frame, already scaled by the zoom factor.
+     */
+    final BufferedImage image;
+    
+    /**
+     * Renders into image.
+     */
+    final Rasterizer raster;
+    
+    /**
+     * The zoom factor image was scaled by.
+     */
+    final int zoomFactor;
+    
+    /**
+     * The sequence number of the published frame this image shows.
+     * 0 means the image shows no frame yet, and is drawn whole by the next
+     * publish.
+     */
+    long sequence;
+    
+    /**
+     * Creates a blank frame for a screen of width by height at zoomFactor.
+     */
+    public FrameBuffer(int width, int height, int zoomFactor) {
+        this(new BufferedImage(zoomFactor*width, zoomFactor*height, BufferedImage.TYPE_INT_RGB), zoomFactor);
+    }
+    
+    /**
+     * Creates a frame on image, which is already scaled by zoomFactor.
+     * The pixels of image are left as they are.
+     */
+    public FrameBuffer(BufferedImage image, int zoomFactor) {
+        this.image = image;
+        raster = new Rasterizer(image);
+        this.zoomFactor = zoomFactor;
+        sequence = 0;
+    }
+    
+    /**
+     * Returns true if this frame is for a screen of width by height at 
+     * zoomFactor.
+     */
+    public boolean fits(int width, int height, int zoomFactor) {
+        return this.zoomFactor == zoomFactor && image.getWidth() == zoomFactor*width && image.getHeight() == zoomFactor*height;
+    }
+}
@@ -0,0 +1,134 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * The printable ASCII characters of a fixed-width font, rendered once.
+ * 
+ * Each character is rendered into a cell of the character width by the 
+ * character height, with the baseline at the ascent.  Only the coverage of
+ * each pixel is kept, so a cell can be drawn in any color.
+ * 
+ * @see Rasterizer#text
+ * @author Ronald Chen
+ */
+final class GlyphAtlas {
+
+    /**
+     * The first character in the atlas.
+     */
+    private static final char FIRST = ' ';
+    
+    /**
+     * The last character in the atlas.
+     */
+    private static final char LAST = '~';
+    
+    /**
+     * The width of a cell.
+     */
+    final int cellWidth;
+    
+    /**
+     * The height of a cell.
+     */
+    final int cellHeight;
+    
+    /**
+     * The coverage of every pixel of every cell, 0 to 255.
+     * Cell c starts at (c - FIRST)*cellWidth*cellHeight and is stored row by
+     * row.
+     */
+    private final byte[] coverage;
+    
+    /**
+     * Renders the characters of f.
+     * 
+     * @param f a fixed-width font
+     * @param fm the metrics of f
+     */
+    public GlyphAtlas(Font f, FontMetrics fm) {
+        cellWidth = fm.charWidth('a');
+        cellHeight = fm.getHeight();
+        int n = LAST - FIRST + 1;
+        int cellSize = cellWidth*cellHeight;
+        coverage = new byte[n*cellSize];
+        
+        BufferedImage img = new BufferedImage(cellWidth, cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setFont(f);
+        g.setColor(Color.WHITE);
+        g.setComposite(AlphaComposite.Src);
+        int[] rgb = new int[cellSize];
+        for(int i = 0; i < n; i++) {
+            g.setColor(new Color(0, 0, 0, 0));
+            g.fillRect(0, 0, cellWidth, cellHeight);
+            g.setColor(Color.WHITE);
+            g.drawString(String.valueOf((char) (FIRST + i)), 0, fm.getAscent());
+            img.getRGB(0, 0, cellWidth, cellHeight, rgb, 0, cellWidth);
+            for(int j = 0; j < cellSize; j++) {
+                coverage[i*cellSize + j] = (byte) (rgb[j] >>> 24);
+            }
+        }
+        g.dispose();
+    }
+    
+    /**
+     * Returns true if the atlas has the character c.
+     */
+    public boolean contains(char c) {
+        return c >= FIRST && c <= LAST;
+    }
+    
+    /**
+     * Returns true if the atlas has all characters of s.
+     */
+    public boolean containsAll(CharSequence s) {
+        return containsAll(s, 0, s.length());
+    }
+    
+    /**
+     * Returns true if the atlas has all characters of s from start to end.
+     */
+    public boolean containsAll(CharSequence s, int start, int end) {
+        for(int i = end - 1; i >= start; i--) {
+            if(!contains(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the coverage array.
+     * Only read by the Rasterizer.
+     */
+    byte[] coverage() {
+        return coverage;
+    }
+    
+    /**
+     * Returns the offset in coverage() of the cell of c.
+     */
+    int offset(char c) {
+        return (c - FIRST)*cellWidth*cellHeight;
+    }
+}
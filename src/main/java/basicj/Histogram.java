@@ -0,0 +1,70 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+/**
+ * A running histogram of durations.
+ * 
+ * Durations are counted in buckets by powers of 2 nanoseconds, so recording
+ * is a few additions and never allocates.  Only one thread may record at a
+ * time.  Other threads may take a snapshot without locking, which may then 
+ * be off by the durations being recorded at that moment.
+ * 
+ * @author Ronald Chen
+ */
+final class Histogram {
+
+    /**
+     * The number of durations in each bucket.
+     * Bucket i counts durations from 2^i up to 2^(i+1) nanoseconds, bucket 0
+     * also counts durations under 1 nanosecond.
+     */
+    private final long[] buckets = new long[Timing.BUCKETS];
+    
+    private long count;
+    
+    private long totalNanos;
+    
+    private long maxNanos;
+    
+    /**
+     * Records a duration.
+     */
+    public void record(long nanos) {
+        buckets[nanos <= 0?0:63 - Long.numberOfLeadingZeros(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if(nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+    
+    /**
+     * Records the time since start, a System.nanoTime().
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Returns a copy of the histogram.
+     */
+    public Timing snapshot() {
+        return new Timing(count, totalNanos, maxNanos, buckets.clone());
+    }
+}
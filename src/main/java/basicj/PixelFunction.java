@@ -0,0 +1,38 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+/**
+ * A function giving the color of each pixel, for the shade command.
+ * 
+ * The function may be called for many pixels at the same time from
+ * different threads, so it should only depend on x and y and on data that
+ * does not change while shading.
+ * 
+ * @see BasicJ#shade(PixelFunction)
+ * @author Ronald Chen
+ */
+public interface PixelFunction {
+
+    /**
+     * Returns the color of the pixel at (x, y), as a packed RGB color.
+     * 
+     * @see BasicJ#rgb(int, int, int)
+     */
+    int rgb(int x, int y);
+}
@@ -0,0 +1,339 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+/**
+ * The printed text, already broken into screen lines.
+ *
+ * Text is wrapped as it is printed.  Only the last line is ever extended, so
+ * printing costs the length of the printed text, not the length of
+ * everything printed so far.  The whole text is only wrapped again when the
+ * width changes.
+ * 
+ * The lines are kept in a ring with room for exactly the lines that fit on
+ * the screen.  When a new line does not fit, the oldest line is dropped and
+ * its record is reused for the new line, so memory stays bounded no matter 
+ * how much is printed.
+ *
+ * The layout is not synchronized, Screen only uses it holding its
+ * publishLock, which already orders prints against the composing of frames.
+ *
+ * @author Ronald Chen
+ */
+final class PrintLayout {
+
+    /**
+     * A single line of the screen.
+     *
+     * The text is kept in a char array, and the colors as runs in an int 
+     * array of (offset, packed color) pairs, where each run goes from its
+     * offset to the offset of the next run.  Both arrays are kept when the 
+     * line is reused, so printing into a warmed up ring allocates nothing.
+     */
+    static final class Line implements CharSequence {
+
+        /**
+         * The characters of the line, only the first length are used.
+         */
+        private char[] text = new char[16];
+
+        /**
+         * The runs of the same color, the offset in text where run i starts
+         * is at 2*i and its packed ARGB color at 2*i + 1.
+         */
+        private int[] runs = new int[8];
+
+        /**
+         * The number of runs.
+         */
+        int runCount;
+
+        /**
+         * The number of characters in the line.
+         */
+        int length;
+
+        /**
+         * True if the line was ended by a '\n', false if it is the last
+         * line or was wrapped because it was full.
+         */
+        boolean hardBreak;
+
+        /**
+         * Empties the line, so it can be reused.
+         */
+        void reset() {
+            runCount = 0;
+            length = 0;
+            hardBreak = false;
+        }
+
+        /**
+         * Appends the characters of s from start to end with color argb.
+         */
+        void append(int argb, String s, int start, int end) {
+            int n = length + end - start;
+            if(n > text.length) {
+                char[] newText = new char[Math.max(n, 2*text.length)];
+                System.arraycopy(text, 0, newText, 0, length);
+                text = newText;
+            }
+            if(runCount == 0 || runs[2*runCount - 1] != argb) {
+                if(2*runCount == runs.length) {
+                    int[] newRuns = new int[2*runs.length];
+                    System.arraycopy(runs, 0, newRuns, 0, runs.length);
+                    runs = newRuns;
+                }
+                runs[2*runCount] = length;
+                runs[2*runCount + 1] = argb;
+                runCount++;
+            }
+            s.getChars(start, end, text, length);
+            length = n;
+        }
+
+        /**
+         * Deletes the last character.
+         */
+        void deleteLast() {
+            length--;
+            if(runs[2*runCount - 2] == length) {
+                runCount--;
+            }
+        }
+
+        /**
+         * Returns the offset of the first character of run i.
+         */
+        int runStart(int i) {
+            return runs[2*i];
+        }
+
+        /**
+         * Returns the offset after the last character of run i.
+         */
+        int runEnd(int i) {
+            return (i + 1 < runCount)?runs[2*i + 2]:length;
+        }
+
+        /**
+         * Returns the packed ARGB color of run i.
+         */
+        int runColor(int i) {
+            return runs[2*i + 1];
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public char charAt(int index) {
+            return text[index];
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return new String(text, start, end - start);
+        }
+
+        /**
+         * Returns the text of the line, without colors.
+         */
+        public String toString() {
+            return new String(text, 0, length);
+        }
+    }
+
+    /**
+     * The ring of lines.
+     * Its length is the number of lines that fit on the screen.
+     */
+    private Line[] ring;
+
+    /**
+     * The index in ring of the oldest line.
+     */
+    private int head;
+
+    /**
+     * The number of lines in use.
+     * There is always at least one line, the last line is the one being
+     * printed to.
+     */
+    private int count;
+
+    /**
+     * The number of characters that fit on a line.
+     */
+    private int charsPerLine;
+
+    /**
+     * Creates an empty layout.
+     */
+    public PrintLayout(int charsPerLine, int maxLines) {
+        this.charsPerLine = Math.max(1, charsPerLine);
+        ring = new Line[Math.max(1, maxLines)];
+        clear();
+    }
+
+    /**
+     * Returns the number of lines.
+     */
+    public int lineCount() {
+        return count;
+    }
+
+    /**
+     * Returns line i, where line 0 is the top line of the screen.
+     */
+    public Line line(int i) {
+        return ring[(head + i)%ring.length];
+    }
+
+    /**
+     * Removes all text.
+     */
+    public void clear() {
+        head = 0;
+        count = 0;
+        newLine();
+    }
+
+    /**
+     * Prints s with the packed ARGB color argb.
+     *
+     * @return the index of the first line that changed, or 0 if the lines
+     * were scrolled up
+     */
+    public int print(int argb, String s) {
+        int first = count - 1;
+        boolean scrolled = false;
+        Line last = line(first);
+        int start = 0;
+        int n = s.length();
+        // the next '\n' at or after start, or n if there is none, so each
+        // search starts after the last one and s is only scanned once
+        int newline = -1;
+        while(start < n) {
+            if(s.charAt(start) == '\n') {
+                last.hardBreak = true;
+                scrolled |= count == ring.length;
+                last = newLine();
+                start++;
+            } else {
+                if(last.length == charsPerLine) {
+                    scrolled |= count == ring.length;
+                    last = newLine();
+                }
+                int end = Math.min(n, start + charsPerLine - last.length);
+                if(newline < start) {
+                    newline = s.indexOf('\n', start);
+                    if(newline == -1) {
+                        newline = n;
+                    }
+                }
+                end = Math.min(end, newline);
+                last.append(argb, s, start, end);
+                start = end;
+            }
+        }
+        return scrolled?0:first;
+    }
+
+    /**
+     * Adds a new empty line to the end.
+     * If the ring is full, the oldest line is dropped and reused.
+     */
+    private Line newLine() {
+        int i = (head + count)%ring.length;
+        if(count == ring.length) {
+            head = (head + 1)%ring.length;
+        } else {
+            count++;
+        }
+        if(ring[i] == null) {
+            ring[i] = new Line();
+        } else {
+            ring[i].reset();
+        }
+        return ring[i];
+    }
+
+    /**
+     * Deletes the last printed character iff it is c.
+     *
+     * @return the index of the first line that changed, or -1 if nothing
+     * changed
+     */
+    public int backspace(char c) {
+        int i = count - 1;
+        Line last = line(i);
+        if(last.length == 0) {
+            if(i == 0) {
+                return -1;
+            }
+            if(line(i - 1).hardBreak) {
+                // the last character is the '\n' ending the line before
+                if(c != '\n') {
+                    return -1;
+                }
+                line(i - 1).hardBreak = false;
+                count--;
+                return i - 1;
+            }
+            // the line before was full, the last character is on it
+            count--;
+            i--;
+            last = line(i);
+        }
+        if(last.text[last.length - 1] != c) {
+            return -1;
+        }
+        last.deleteLast();
+        return i;
+    }
+
+    /**
+     * Sets the size of the screen in characters.
+     * If the width changed, all lines are wrapped again to the new width.
+     * If there are too many lines for the new height, the oldest lines are
+     * dropped.
+     */
+    public void setSize(int charsPerLine, int maxLines) {
+        charsPerLine = Math.max(1, charsPerLine);
+        maxLines = Math.max(1, maxLines);
+        if(charsPerLine == this.charsPerLine && maxLines == ring.length) {
+            return;
+        }
+        Line[] old = new Line[count];
+        for(int i = 0; i < count; i++) {
+            old[i] = line(i);
+        }
+        this.charsPerLine = charsPerLine;
+        ring = new Line[maxLines];
+        clear();
+        for(int i = 0; i < old.length; i++) {
+            Line line = old[i];
+            for(int j = 0; j < line.runCount; j++) {
+                print(line.runColor(j), new String(line.text, line.runStart(j), line.runEnd(j) - line.runStart(j)));
+            }
+            if(line.hardBreak) {
+                print(0xFF000000, "\n");
+            }
+        }
+    }
+}
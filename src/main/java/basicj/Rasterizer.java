@@ -0,0 +1,612 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Renders primitives directly into the int[] of a BufferedImage.
+ *
+ * Every method writes packed ARGB values straight into the pixel array,
+ * bypassing the Java2D pipeline.  Pixels outside the clip rectangle are
+ * never touched.  The clip defaults to the whole image.
+ *
+ * @author Ronald Chen
+ */
+final class Rasterizer {
+
+    /**
+     * The pixels of the target image, in row major order.
+     */
+    private final int[] pixels;
+
+    /**
+     * The width of the target image, also the length of a row in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height of the target image.
+     */
+    private final int height;
+    
+    /**
+     * True if the target has an alpha channel.
+     */
+    private final boolean alpha;
+
+    /**
+     * The clip rectangle.
+     * The max values are exclusive.
+     */
+    private int clipMinX, clipMinY, clipMaxX, clipMaxY;
+
+    /**
+     * The number of ints fillPolygon keeps per edge.
+     */
+    private static final int EDGE_SIZE = 6;
+
+    /**
+     * One in the 31 bit fractions of the polygon edges.
+     */
+    private static final double ERROR_ONE = 0x7FFFFFFF;
+
+    /**
+     * The edges of the polygon, for fillPolygon.
+     */
+    private int[] edges = new int[EDGE_SIZE*16];
+
+    /**
+     * The crossings of a row with the polygon edges, for fillPolygon.
+     */
+    private int[] crossings = new int[16];
+
+    /**
+     * Creates a Rasterizer for img.
+     *
+     * @param img must be backed by a DataBufferInt, IE. TYPE_INT_RGB or
+     * TYPE_INT_ARGB
+     */
+    public Rasterizer(BufferedImage img) {
+        this(((DataBufferInt) img.getRaster().getDataBuffer()).getData(), img.getWidth(), img.getHeight(), img.getColorModel().hasAlpha());
+    }
+
+    /**
+     * Creates a Rasterizer for a raw pixel array.
+     * 
+     * @param alpha true if the pixels are ARGB, false if they are RGB
+     */
+    public Rasterizer(int[] pixels, int width, int height, boolean alpha) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+        setClip(0, 0, width, height);
+    }
+
+    /**
+     * Sets the clip rectangle.
+     * The rectangle is intersected with the image bounds.
+     */
+    public void setClip(int x, int y, int w, int h) {
+        clipMinX = Math.max(x, 0);
+        clipMinY = Math.max(y, 0);
+        clipMaxX = Math.min(x + w, width);
+        clipMaxY = Math.min(y + h, height);
+    }
+
+    /**
+     * Sets the clip rectangle to r.
+     */
+    public void setClip(java.awt.Rectangle r) {
+        setClip(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Returns the pixel array rendered to.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the width of the target.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the target.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns true if the pixels are ARGB, false if they are RGB.
+     */
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Draws a single pixel.
+     */
+    public void point(int x, int y, int argb) {
+        if(x >= clipMinX && x < clipMaxX && y >= clipMinY && y < clipMaxY) {
+            pixels[y*width + x] = argb;
+        }
+    }
+
+    /**
+     * Draws count pixels at (xs[i], ys[i]).
+     * If rgb is null every pixel is drawn with argb, otherwise pixel i is 
+     * drawn with the opaque color rgb[i].
+     */
+    public void points(int[] xs, int[] ys, int[] rgb, int count, int argb) {
+        final int[] p = pixels;
+        final int w = width;
+        final int minX = clipMinX;
+        final int minY = clipMinY;
+        final int maxX = clipMaxX;
+        final int maxY = clipMaxY;
+        int x, y;
+        if(rgb == null) {
+            for(int i = 0; i < count; i++) {
+                x = xs[i];
+                y = ys[i];
+                if(x >= minX && x < maxX && y >= minY && y < maxY) {
+                    p[y*w + x] = argb;
+                }
+            }
+        } else {
+            for(int i = 0; i < count; i++) {
+                x = xs[i];
+                y = ys[i];
+                if(x >= minX && x < maxX && y >= minY && y < maxY) {
+                    p[y*w + x] = 0xFF000000 | rgb[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a one pixel wide line from (x0, y0) to (x1, y1), inclusive.
+     * This is the integer Bresenham algorithm.  The line is clipped on its 
+     * major axis before stepping, so at most one clip width or height of 
+     * pixels is visited no matter how long the line is.
+     */
+    public void line(int x0, int y0, int x1, int y1, int argb) {
+        if((x0 < clipMinX && x1 < clipMinX) || (x0 >= clipMaxX && x1 >= clipMaxX)
+                || (y0 < clipMinY && y1 < clipMinY) || (y0 >= clipMaxY && y1 >= clipMaxY)) {
+            return;
+        }
+        long dx = (long) x1 - x0;
+        long dy = (long) y1 - y0;
+        int sx = (dx < 0)?-1:1;
+        int sy = (dy < 0)?-1:1;
+        dx = Math.abs(dx);
+        dy = Math.abs(dy);
+        if(dx >= dy) {
+            if(dx == 0) {
+                point(x0, y0, argb);
+                return;
+            }
+            // clip the range of steps k so x0 + sx*k is within the clip
+            long kStart, kEnd;
+            if(sx > 0) {
+                kStart = Math.max(0, (long) clipMinX - x0);
+                kEnd = Math.min(dx, (long) clipMaxX - 1 - x0);
+            } else {
+                kStart = Math.max(0, (long) x0 - clipMaxX + 1);
+                kEnd = Math.min(dx, (long) x0 - clipMinX);
+            }
+            // the minor offset of step k is (2*k*dy + dx)/(2*dx), rounded down
+            long den = 2*dx;
+            long num = 2*kStart*dy + dx;
+            int x = (int) (x0 + sx*kStart);
+            int y = (int) (y0 + sy*(num/den));
+            long err = num%den;
+            for(long k = kStart; k <= kEnd; k++) {
+                if(y >= clipMinY && y < clipMaxY) {
+                    pixels[y*width + x] = argb;
+                } else if((sy > 0)?(y >= clipMaxY):(y < clipMinY)) {
+                    return;
+                }
+                x += sx;
+                err += 2*dy;
+                if(err >= den) {
+                    err -= den;
+                    y += sy;
+                }
+            }
+        } else {
+            long kStart, kEnd;
+            if(sy > 0) {
+                kStart = Math.max(0, (long) clipMinY - y0);
+                kEnd = Math.min(dy, (long) clipMaxY - 1 - y0);
+            } else {
+                kStart = Math.max(0, (long) y0 - clipMaxY + 1);
+                kEnd = Math.min(dy, (long) y0 - clipMinY);
+            }
+            long den = 2*dy;
+            long num = 2*kStart*dx + dy;
+            int y = (int) (y0 + sy*kStart);
+            int x = (int) (x0 + sx*(num/den));
+            long err = num%den;
+            for(long k = kStart; k <= kEnd; k++) {
+                if(x >= clipMinX && x < clipMaxX) {
+                    pixels[y*width + x] = argb;
+                } else if((sx > 0)?(x >= clipMaxX):(x < clipMinX)) {
+                    return;
+                }
+                y += sy;
+                err += 2*dx;
+                if(err >= den) {
+                    err -= den;
+                    x += sx;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the rectangle is completely inside the clip.
+     */
+    private boolean isInsideClip(int minX, int minY, int maxX, int maxY) {
+        return minX >= clipMinX && maxX < clipMaxX && minY >= clipMinY && maxY < clipMaxY;
+    }
+    
+    /**
+     * Draws the outline of the circle t centered at (cx, cy).
+     */
+    public void circle(int cx, int cy, CircleTable t, int argb) {
+        final int r = t.radius;
+        if(cx + r < clipMinX || cx - r >= clipMaxX || cy + r < clipMinY || cy - r >= clipMaxY) {
+            return;
+        }
+        final int[] p = pixels;
+        final int w = width;
+        final int[] o = t.octant;
+        final int n = 2*t.octantLength;
+        int x, y;
+        if(isInsideClip(cx - r, cy - r, cx + r, cy + r)) {
+            for(int i = 0; i < n; i += 2) {
+                x = o[i];
+                y = o[i + 1];
+                p[(cy + y)*w + cx + x] = argb;
+                p[(cy + y)*w + cx - x] = argb;
+                p[(cy - y)*w + cx + x] = argb;
+                p[(cy - y)*w + cx - x] = argb;
+                p[(cy + x)*w + cx + y] = argb;
+                p[(cy + x)*w + cx - y] = argb;
+                p[(cy - x)*w + cx + y] = argb;
+                p[(cy - x)*w + cx - y] = argb;
+            }
+        } else {
+            for(int i = 0; i < n; i += 2) {
+                x = o[i];
+                y = o[i + 1];
+                point(cx + x, cy + y, argb);
+                point(cx - x, cy + y, argb);
+                point(cx + x, cy - y, argb);
+                point(cx - x, cy - y, argb);
+                point(cx + y, cy + x, argb);
+                point(cx - y, cy + x, argb);
+                point(cx + y, cy - x, argb);
+                point(cx - y, cy - x, argb);
+            }
+        }
+    }
+    
+    /**
+     * Fills the circle t centered at (cx, cy).
+     * Each row of the circle is filled as one span.
+     */
+    public void fillCircle(int cx, int cy, CircleTable t, int argb) {
+        final int r = t.radius;
+        final int[] span = t.span;
+        int minY = Math.max(cy - r, clipMinY);
+        int maxY = Math.min(cy + r, clipMaxY - 1);
+        for(int y = minY; y <= maxY; y++) {
+            int hw = span[Math.abs(y - cy)];
+            int x0 = Math.max(cx - hw, clipMinX);
+            int x1 = Math.min(cx + hw + 1, clipMaxX);
+            if(x0 < x1) {
+                Arrays.fill(pixels, y*width + x0, y*width + x1, argb);
+            }
+        }
+    }
+
+    /**
+     * Scales the rectangle r of src up by factor into dst.
+     * Every pixel becomes a factor by factor block.  Each row is scaled
+     * once and then copied to the other factor - 1 rows of its block.
+     * 
+     * @param dst must be exactly factor times the size of src
+     */
+    public static void zoom(Rasterizer src, Rasterizer dst, int factor, java.awt.Rectangle r) {
+        final int[] s = src.pixels;
+        final int[] d = dst.pixels;
+        final int sw = src.width;
+        final int dw = dst.width;
+        final int x0 = Math.max(0, r.x);
+        final int x1 = Math.min(sw, r.x + r.width);
+        final int y1 = Math.min(src.height, r.y + r.height);
+        final int rowLength = factor*(x1 - x0);
+        if(rowLength <= 0) {
+            return;
+        }
+        if(factor == 1) {
+            for(int y = Math.max(0, r.y); y < y1; y++) {
+                System.arraycopy(s, y*sw + x0, d, y*dw + x0, rowLength);
+            }
+            return;
+        }
+        for(int y = Math.max(0, r.y); y < y1; y++) {
+            int dst0 = factor*y*dw + factor*x0;
+            int i = dst0;
+            for(int x = x0; x < x1; x++) {
+                int rgb = s[y*sw + x];
+                for(int k = 0; k < factor; k++) {
+                    d[i++] = rgb;
+                }
+            }
+            for(int k = 1; k < factor; k++) {
+                System.arraycopy(d, dst0, d, dst0 + k*dw, rowLength);
+            }
+        }
+    }
+    
+    /**
+     * Draws the rectangle at (x, y) of size w by h of src over the same
+     * rectangle of dst, like Graphics.drawImage with the default SrcOver 
+     * composite, with the same rounding.
+     * 
+     * @param src must be ARGB and dst RGB, both of the same size
+     */
+    public static void over(Rasterizer src, Rasterizer dst, int x, int y, int w, int h) {
+        final int[] s = src.pixels;
+        final int[] d = dst.pixels;
+        final int width = src.width;
+        final int x0 = Math.max(0, x);
+        final int y0 = Math.max(0, y);
+        final int x1 = (int) Math.min((long) x + w, width);
+        final int y1 = (int) Math.min((long) y + h, src.height);
+        for(int row = y0; row < y1; row++) {
+            int end = row*width + x1;
+            for(int i = row*width + x0; i < end; i++) {
+                int p = s[i];
+                int a = p >>> 24;
+                if(a == 0xFF) {
+                    d[i] = p & 0xFFFFFF;
+                } else if(a != 0) {
+                    int q = d[i];
+                    int f = 0xFF - a;
+                    int r = mul8(a, (p >> 16) & 0xFF) + mul8(f, (q >> 16) & 0xFF);
+                    int g = mul8(a, (p >> 8) & 0xFF) + mul8(f, (q >> 8) & 0xFF);
+                    int b = mul8(a, p & 0xFF) + mul8(f, q & 0xFF);
+                    d[i] = (r << 16) | (g << 8) | b;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns a*b/255 rounded, for a and b from 0 to 255.
+     */
+    private static int mul8(int a, int b) {
+        int v = a*b + 0x80;
+        return (v + (v >> 8)) >> 8;
+    }
+    
+    /**
+     * Fills the rectangle at (x, y) of size w by h.
+     */
+    public void fillRect(int x, int y, int w, int h, int argb) {
+        int x0 = Math.max(x, clipMinX);
+        int y0 = Math.max(y, clipMinY);
+        int x1 = (int) Math.min((long) x + w, clipMaxX);
+        int y1 = (int) Math.min((long) y + h, clipMaxY);
+        for(int row = y0; row < y1; row++) {
+            if(x0 < x1) {
+                Arrays.fill(pixels, row*width + x0, row*width + x1, argb);
+            }
+        }
+    }
+    
+    /**
+     * Fills the polygon with the count corners (xs[i], ys[i]) by the
+     * even-odd rule, with exactly the pixels Graphics.fillPolygon fills.
+     *
+     * Like Java2D, the corners are moved by a quarter pixel and each edge
+     * is set up once in float, its crossing with each row center is then
+     * stepped in integers.  Each row is filled in spans with Arrays.fill.
+     */
+    public void fillPolygon(int[] xs, int[] ys, int count, int argb) {
+        if(count < 3) {
+            return;
+        }
+        if(edges.length < EDGE_SIZE*count) {
+            edges = new int[EDGE_SIZE*count];
+            crossings = new int[count];
+        }
+        final int[] e = edges;
+        int n = 0;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for(int i = 0, j = count - 1; i < count; j = i++) {
+            if(edge(e, EDGE_SIZE*n, xs[j], ys[j], xs[i], ys[i])) {
+                minY = Math.min(minY, e[EDGE_SIZE*n]);
+                maxY = Math.max(maxY, e[EDGE_SIZE*n + 1]);
+                n++;
+            }
+        }
+        minY = Math.max(minY, clipMinY);
+        maxY = Math.min(maxY, clipMaxY);
+        final int[] c = crossings;
+        for(int y = minY; y < maxY; y++) {
+            int m = 0;
+            for(int i = 0; i < EDGE_SIZE*n; i += EDGE_SIZE) {
+                if(y < e[i] || y >= e[i + 1]) {
+                    continue;
+                }
+                // Java2D adds bumpx and bumperr once per row, carrying the
+                // error out of 31 bits, which is this in one step
+                long k = y - e[i];
+                long error = e[i + 5] + k*e[i + 4];
+                long x = e[i + 2] + k*e[i + 3] + (error >> 31);
+                c[m++] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, x));
+            }
+            Arrays.sort(c, 0, m);
+            for(int k = 0; k + 1 < m; k += 2) {
+                int x0 = Math.max(c[k], clipMinX);
+                int x1 = Math.min(c[k + 1], clipMaxX);
+                if(x0 < x1) {
+                    Arrays.fill(pixels, y*width + x0, y*width + x1, argb);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets up the edge from (x0, y0) to (x1, y1) at e[i] as the first row,
+     * the row after the last, the x of the first row, the whole and the
+     * fraction, in 31 bits, of the step per row and the fraction of the
+     * first x.
+     *
+     * @return false if the edge crosses no row center
+     */
+    private static boolean edge(int[] e, int i, int x0, int y0, int x1, int y1) {
+        if(y0 > y1) {
+            int t = x0;
+            x0 = x1;
+            x1 = t;
+            t = y0;
+            y0 = y1;
+            y1 = t;
+        }
+        float fx0 = x0 + 0.25f;
+        float fy0 = y0 + 0.25f;
+        float fx1 = x1 + 0.25f;
+        float fy1 = y1 + 0.25f;
+        int firstY = (int) Math.ceil(fy0 - 0.5f);
+        int lastY = (int) Math.ceil(fy1 - 0.5f);
+        if(firstY >= lastY) {
+            return false;
+        }
+        float dx = fx1 - fx0;
+        float dy = fy1 - fy0;
+        float slope = dx/dy;
+        float bump = firstY + 0.5f - fy0;
+        fx0 += bump*dx/dy;
+        int firstX = (int) Math.ceil(fx0 - 0.5f);
+        e[i] = firstY;
+        e[i + 1] = lastY;
+        e[i + 2] = firstX;
+        e[i + 3] = (int) Math.floor(slope);
+        e[i + 4] = (int) ((slope - Math.floor(slope))*ERROR_ONE);
+        e[i + 5] = (int) ((fx0 - (firstX - 0.5f))*ERROR_ONE);
+        return true;
+    }
+    
+    /**
+     * Draws a sprite with its top left corner at (x, y).
+     * Each visible part of a run of opaque pixels is copied with one 
+     * System.arraycopy.
+     */
+    public void sprite(Sprite s, int x, int y) {
+        final int[] runs = s.runs;
+        final int row0 = Math.max(0, clipMinY - y);
+        final int row1 = (int) Math.min(s.height, (long) clipMaxY - y);
+        for(int row = row0; row < row1; row++) {
+            int src = row*s.width;
+            int dst = (y + row)*width + x;
+            for(int i = s.rowStart[row]; i < s.rowStart[row + 1]; i += 2) {
+                long start = Math.max((long) x + runs[i], clipMinX);
+                long end = Math.min((long) x + runs[i] + runs[i + 1], clipMaxX);
+                if(start < end) {
+                    int col = (int) (start - x);
+                    System.arraycopy(s.pixels, src + col, pixels, dst + col, (int) (end - start));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Draws the characters s[start] to s[end - 1] from the glyph atlas.
+     * The top left corner of the first character is at (x, y).  All 
+     * characters must be in the atlas.
+     * 
+     * @see GlyphAtlas#containsAll(CharSequence)
+     */
+    public void text(GlyphAtlas atlas, int x, int y, CharSequence s, int start, int end, int argb) {
+        final int cw = atlas.cellWidth;
+        final int ch = atlas.cellHeight;
+        if(y >= clipMaxY || y + ch <= clipMinY) {
+            return;
+        }
+        final byte[] coverage = atlas.coverage();
+        final int[] p = pixels;
+        int row0 = Math.max(0, clipMinY - y);
+        int row1 = Math.min(ch, clipMaxY - y);
+        for(int i = start; i < end; i++, x += cw) {
+            if(x >= clipMaxX) {
+                return;
+            }
+            if(x + cw <= clipMinX) {
+                continue;
+            }
+            int col0 = Math.max(0, clipMinX - x);
+            int col1 = Math.min(cw, clipMaxX - x);
+            int cell = atlas.offset(s.charAt(i));
+            for(int row = row0; row < row1; row++) {
+                int src = cell + row*cw;
+                int dst = (y + row)*width + x;
+                for(int col = col0; col < col1; col++) {
+                    int a = coverage[src + col] & 0xFF;
+                    if(a == 0xFF) {
+                        p[dst + col] = argb;
+                    } else if(a != 0) {
+                        p[dst + col] = blend(argb, a, p[dst + col]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Blends the opaque color src with coverage a over the pixel dst.
+     */
+    private int blend(int src, int a, int dst) {
+        int dstA = alpha?(dst >>> 24):0xFF;
+        // the weight of dst in the result, out of 255*255
+        int dstWeight = dstA*(0xFF - a);
+        int outA = a*0xFF + dstWeight;
+        if(outA == 0) {
+            return 0;
+        }
+        int r = (((src >> 16) & 0xFF)*a*0xFF + ((dst >> 16) & 0xFF)*dstWeight)/outA;
+        int g = (((src >> 8) & 0xFF)*a*0xFF + ((dst >> 8) & 0xFF)*dstWeight)/outA;
+        int b = ((src & 0xFF)*a*0xFF + (dst & 0xFF)*dstWeight)/outA;
+        return ((outA/0xFF) << 24) | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,65 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+/**
+ * The live counters and timings of a Screen.
+ * 
+ * Every field is only written by one thread at a time, the thread running
+ * the commands for the counters, the publishing thread for compose and 
+ * zoom, and the event dispatch thread for paint.  So they are plain fields,
+ * and counting costs an increment.  They are read without locking when a
+ * snapshot is taken.
+ * 
+ * @see RenderStats
+ * @author Ronald Chen
+ */
+final class RenderCounters {
+
+    long points;
+    long pointsBatches;
+    long lines;
+    long circles;
+    long fillCircles;
+    long fillRects;
+    long fillPolygons;
+    long texts;
+    long prints;
+    long shades;
+    long sprites;
+    
+    /**
+     * Laying out printed text into lines.
+     */
+    final Histogram layout = new Histogram();
+    
+    /**
+     * Composing the dirty region of the backBuffer.
+     */
+    final Histogram compose = new Histogram();
+    
+    /**
+     * Scaling the changed area into a published frame.
+     */
+    final Histogram zoom = new Histogram();
+    
+    /**
+     * Painting a frame on the event dispatch thread.
+     */
+    final Histogram paint = new Histogram();
+}
@@ -0,0 +1,215 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of what a screen has drawn and how long it took.
+ * 
+ * The numbers are read while the program keeps running, so they may be off
+ * by the commands running at that moment.
+ * 
+ * @see BasicJ#stats()
+ * @see RenderStatsMXBean
+ * @author Ronald Chen
+ */
+public final class RenderStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long points;
+    private final long pointsBatches;
+    private final long lines;
+    private final long circles;
+    private final long fillCircles;
+    private final long fillRects;
+    private final long fillPolygons;
+    private final long texts;
+    private final long prints;
+    private final long shades;
+    private final long sprites;
+    
+    private final long publishedFrames;
+    private final long paintedFrame;
+    private final long droppedFrames;
+    
+    private final Timing layout;
+    private final Timing compose;
+    private final Timing zoom;
+    private final Timing paint;
+    
+    RenderStats(RenderCounters c, long publishedFrames, long paintedFrame, long droppedFrames) {
+        points = c.points;
+        pointsBatches = c.pointsBatches;
+        lines = c.lines;
+        circles = c.circles;
+        fillCircles = c.fillCircles;
+        fillRects = c.fillRects;
+        fillPolygons = c.fillPolygons;
+        texts = c.texts;
+        prints = c.prints;
+        shades = c.shades;
+        sprites = c.sprites;
+        this.publishedFrames = publishedFrames;
+        this.paintedFrame = paintedFrame;
+        this.droppedFrames = droppedFrames;
+        layout = c.layout.snapshot();
+        compose = c.compose.snapshot();
+        zoom = c.zoom.snapshot();
+        paint = c.paint.snapshot();
+    }
+    
+    /**
+     * Returns the number of point commands.
+     */
+    public long getPoints() {
+        return points;
+    }
+    
+    /**
+     * Returns the number of points commands.
+     */
+    public long getPointsBatches() {
+        return pointsBatches;
+    }
+    
+    /**
+     * Returns the number of line commands.
+     */
+    public long getLines() {
+        return lines;
+    }
+    
+    /**
+     * Returns the number of circle commands.
+     */
+    public long getCircles() {
+        return circles;
+    }
+    
+    /**
+     * Returns the number of fillCircle commands.
+     */
+    public long getFillCircles() {
+        return fillCircles;
+    }
+    
+    /**
+     * Returns the number of fillRect commands.
+     */
+    public long getFillRects() {
+        return fillRects;
+    }
+    
+    /**
+     * Returns the number of fillPolygon commands.
+     */
+    public long getFillPolygons() {
+        return fillPolygons;
+    }
+    
+    /**
+     * Returns the number of text commands.
+     */
+    public long getTexts() {
+        return texts;
+    }
+    
+    /**
+     * Returns the number of print and println commands.
+     */
+    public long getPrints() {
+        return prints;
+    }
+    
+    /**
+     * Returns the number of shade commands.
+     */
+    public long getShades() {
+        return shades;
+    }
+    
+    /**
+     * Returns the number of sprite commands.
+     */
+    public long getSprites() {
+        return sprites;
+    }
+    
+    /**
+     * Returns the number of frames published by flushing.
+     */
+    public long getPublishedFrames() {
+        return publishedFrames;
+    }
+    
+    /**
+     * Returns the number of the last frame painted on screen.
+     */
+    public long getPaintedFrame() {
+        return paintedFrame;
+    }
+    
+    /**
+     * Returns the number of published frames that were replaced by a newer
+     * frame before they could be painted.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+    
+    /**
+     * Returns the time spent laying out printed text into lines.
+     */
+    public Timing getLayout() {
+        return layout;
+    }
+    
+    /**
+     * Returns the time spent composing text and drawings into the back 
+     * buffer, per flush.
+     */
+    public Timing getCompose() {
+        return compose;
+    }
+    
+    /**
+     * Returns the time spent copying the back buffer into a frame at the 
+     * zoom factor, per flush.
+     */
+    public Timing getZoom() {
+        return zoom;
+    }
+    
+    /**
+     * Returns the time spent painting frames on screen.
+     */
+    public Timing getPaint() {
+        return paint;
+    }
+    
+    public String toString() {
+        return "points " + points + ", points batches " + pointsBatches + ", lines " + lines + ", circles " + circles + ", fillCircles " + fillCircles + ", fillRects " + fillRects + ", fillPolygons " + fillPolygons + ", texts " + texts + ", prints " + prints + ", shades " + shades + ", sprites " + sprites + "\n"
+            + "frames published " + publishedFrames + ", painted up to " + paintedFrame + ", dropped " + droppedFrames + "\n"
+            + "layout:  " + layout + "\n"
+            + "compose: " + compose + "\n"
+            + "zoom:    " + zoom + "\n"
+            + "paint:   " + paint;
+    }
+}
@@ -0,0 +1,38 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+/**
+ * The rendering statistics of a BasicJ program, for JMX.
+ * 
+ * When run with <code>-Dbasicj.stats=true</code>, every BasicJ program 
+ * registers one under the name 
+ * <code>basicj:type=RenderStats,id=</code><i>n</i>, where n counts the 
+ * registered programs in the JVM from 1.  The stats are null once the 
+ * program has been garbage collected.
+ * 
+ * @see BasicJ#stats()
+ * @author Ronald Chen
+ */
+public interface RenderStatsMXBean {
+
+    /**
+     * Returns a snapshot of the statistics.
+     */
+    RenderStats getStats();
+}
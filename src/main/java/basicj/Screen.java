@@ -18,8 +18,13 @@
 package basicj;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
 
 import javax.swing.*;
 import basicj.util.*;
@@ -41,72 +46,316 @@ final class Screen extends JComponent {
 	/**
 	 * The back buffer of the screen.
 	 * The final image is composed in this buffer from the print commands and
-     * the draw buffers.  If there were no updates, the paint() method just 
-     * paints this buffer.
+     * the draw buffers, and then copied into a FrameBuffer to be published.
+     * Only the thread holding publishLock may touch it.
+     * @see #publish()
 	 */
 	private BufferedImage backBuffer;
 	
 	/**
-	 * The back buffer for draw commands.
+	 * The back buffer for draw commands, the image of the current layer.
 	 * This layer is where point, line, circle, and text commands are rendered.
-	 * This buffer is only cleared when the clear command is called.  Even when
-	 * a screen command is given, the draw buffer is copied onto the new draw 
-	 * buffer.
+	 * This buffer is only cleared when the clear or clearLayer command is 
+	 * called.  Even when a screen command is given, the draw buffer is copied
+	 * onto the new draw buffer.
 	 */
 	private BufferedImage drawBuffer;
-    
-    /**
-     * The Graphics for the drawBuffer.
-     * This is updated automatically by the resetBuffers method.
-     * @see #drawBuffer
-     */
-    private Graphics2D drawGraphics;
 	
 	/**
-	 * Holds the input from print commands.
-	 * This list also stores the current foreground color, for rendering 
-	 * later.  The clear command empties this buffer.
+	 * A layer of draw commands.
+	 */
+	private static final class Layer {
+	    
+	    final BufferedImage image;
+	    
+	    final Graphics2D graphics;
+	    
+	    final Rasterizer raster;
+	    
+	    /**
+	     * The bounding box of everything drawn since the layer was last 
+	     * cleared, the max values are exclusive.
+	     */
+	    int minX, minY, maxX, maxY;
+	    
+	    /**
+	     * Creates a layer on image and clears it to transparent.
+	     */
+	    Layer(BufferedImage image) {
+	        this.image = image;
+	        graphics = (Graphics2D) image.getGraphics();
+	        raster = new Rasterizer(image);
+	        raster.fillRect(0, 0, image.getWidth(), image.getHeight(), TRANSPARENT.getRGB());
+	        cleared();
+	    }
+	    
+	    /**
+	     * Adds the rectangle from (x0, y0) to (x1, y1) inclusive to the drawn
+	     * area.
+	     */
+	    void drawn(int x0, int y0, int x1, int y1) {
+	        minX = Math.min(minX, x0);
+	        minY = Math.min(minY, y0);
+	        maxX = Math.max(maxX, (int) Math.min((long) x1 + 1, Integer.MAX_VALUE));
+	        maxY = Math.max(maxY, (int) Math.min((long) y1 + 1, Integer.MAX_VALUE));
+	    }
+	    
+	    /**
+	     * Empties the drawn area.
+	     */
+	    void cleared() {
+	        minX = Integer.MAX_VALUE;
+	        minY = Integer.MAX_VALUE;
+	        maxX = Integer.MIN_VALUE;
+	        maxY = Integer.MIN_VALUE;
+	    }
+	}
+	
+	/**
+	 * The number of layers.
+	 */
+	static final int LAYERS = 8;
+	
+	/**
+	 * The layers of draw commands, from the bottom up.  All are drawn over
+	 * the printed text.  Layer 0 always exists, the others are created the
+	 * first time they are selected.
+	 * Only replaced while holding publishLock.
+	 * @see #layer(int)
+	 */
+	private final Layer[] layers = new Layer[LAYERS];
+	
+	/**
+	 * The layer draw commands go to.
+	 */
+	private int currentLayer;
+	
+	/**
+	 * The number of changes to each level of the composed image.  Level 0
+	 * is the background and printed text, level i + 1 is layer i.
+	 * Only the thread holding publishLock may touch it, so a level is never
+	 * cached while it is being drawn.
+	 */
+	private final int[] levelChanges = new int[LAYERS + 1];
+	
+	/**
+	 * levelChanges as of the last compose.
+	 * Only the thread holding publishLock may touch it.
+	 */
+	private final int[] composedChanges = new int[LAYERS + 1];
+	
+	/**
+	 * The number of composes in a row each level was unchanged, up to
+	 * CACHE_AFTER.
+	 * Only the thread holding publishLock may touch it.
+	 */
+	private final int[] quietFrames = new int[LAYERS + 1];
+	
+	/**
+	 * The number of composes a level must be unchanged for before it is
+	 * cached.
 	 */
-	private LinkedList<Pair<Color, StringBuffer>> printBuffer;
+	static final int CACHE_AFTER = 8;
 	
 	/**
-	 * Holds the last print command.
-	 * This Pair is always the last element in the printBuffer.  
-	 * It is replaced with a new one if the foreground color has changed 
-	 * since the last print command.
-	 * @see #printBuffer
+	 * The levels below cachedLevels composed over the whole screen, or null
+	 * if there is no cache yet.  Only the levels above them are composed 
+	 * for each frame.
+	 * Only the thread holding publishLock may touch it.
 	 */
-	private Pair<Color, StringBuffer> lastPrint;
+	private BufferedImage cache;
 	
 	/**
-	 * Holds formated version of the printBuffer.
-	 * Elements in this list are the same elements in the printBuffer, except
-	 * that '\n' characters are converted into hardBreaks and long
-	 * lines are broken up to the screen width using softBreaks.
-	 * This list is cleared when the clear command is called.
-	 * @see #printBuffer
-     * @see #hardBreak
-     * @see #softBreak
+	 * Renders directly into the pixels of the cache.
 	 */
-	private java.util.List<Pair<Color, StringBuffer>> formatedPrintBuffer;
+	private Rasterizer cacheRaster;
 	
 	/**
-	 * Represents a hard new line break.
-	 * This Pair is found in the formatedPrintBuffer.  It 
-	 * separates lines of text where '\n' characters are found.
-	 * @see #softBreak
-     * @see #formatedPrintBuffer
+	 * The Graphics for the cache.
 	 */
-	private static final Pair<Color, StringBuffer> hardBreak = new Pair<Color, StringBuffer>(null, null);
+	private Graphics cacheGraphics;
+	
+	/**
+	 * The buffers and frames of earlier screen sizes and zoom factors.
+	 * Only the thread holding publishLock may touch it.
+	 * @see #screen(int, int)
+	 */
+	private final BufferPool pool = new BufferPool();
+	
+	/**
+	 * The number of levels in the cache, 0 if the cache is not used.
+	 */
+	private int cachedLevels;
+
+    /**
+     * Held while draw commands run, while a frame is composed and 
+     * published, or while the buffers are replaced.  So a frame is never
+     * published while a command is half drawn, whichever thread flushes.
+     * The display list holds it for each batch.
+     * @see #publish()
+     */
+    final Object publishLock = new Object();
+    
+    /**
+     * The frame the next publish is copied into.
+     * Only the thread holding publishLock may touch it.
+     */
+    private FrameBuffer backFrame;
+    
+    /**
+     * The latest published frame, or the frame painted before it.
+     * Frames are exchanged through here by the publishing thread and the
+     * event dispatch thread, without locking.
+     */
+    private final AtomicReference<FrameBuffer> readyFrame;
+    
+    /**
+     * The frame being painted.
+     * Only the event dispatch thread may touch it.
+     */
+    private FrameBuffer paintFrame;
+    
+    /**
+     * The number of frames kept in history.
+     */
+    private static final int FRAME_HISTORY = 8;
+    
+    /**
+     * The area that changed in each of the last FRAME_HISTORY frames.
+     * The area of frame n is at n%FRAME_HISTORY.
+     */
+    private final Rectangle[] history = new Rectangle[FRAME_HISTORY];
+    
+    /**
+     * The area updated by the last compose.
+     * Only the thread holding publishLock may touch it.
+     */
+    private final Rectangle updated = new Rectangle();
+    
+    /**
+     * The area returned by changedSince.
+     * Only the thread holding publishLock may touch it.
+     */
+    private final Rectangle changed = new Rectangle();
+    
+    /**
+     * The sequence number of the last published frame.
+     * Frames are numbered from 1.
+     */
+    private volatile long publishedFrames;
+    
+    /**
+     * The sequence number of the last painted frame.
+     */
+    private volatile long paintedFrame;
+    
+    /**
+     * Notified when a frame is painted, while anyone waits in 
+     * awaitPainted().
+     */
+    private final Object paintLock = new Object();
+    
+    /**
+     * The number of threads waiting in awaitPainted().
+     * Only changed while holding paintLock.
+     */
+    private volatile int paintWaiters;
+    
+    /**
+     * The number of published frames that were never painted, because a
+     * newer frame was published before the event dispatch thread got to 
+     * them.
+     */
+    private volatile long droppedFrames;
+    
+    /**
+     * Records draw commands for the render thread, or null if draw 
+     * commands are drawn immediately.
+     * @see #displayList(boolean)
+     */
+    private volatile DisplayList displayList;
+    
+    /**
+     * Rasterizes the batches of the display list on several threads, or 
+     * null if there is only one render thread.
+     * @see #beginBatch()
+     */
+    private TiledRasterizer tiler;
+    
+    /**
+     * The tiler while a batch is being drawn, otherwise null.
+     * Primitives drawn by drawRaster are recorded here instead.
+     */
+    private TiledRasterizer batch;
+    
+    /**
+     * What this screen has drawn and how long it took.
+     * @see #stats()
+     */
+    private final RenderCounters counters = new RenderCounters();
+    
+    /**
+     * The loaded sprites, the id of a sprite is its index.
+     * @see #loadSprite(String, int)
+     */
+    private final java.util.List<Sprite> sprites = new ArrayList<Sprite>();
+    
+    /**
+     * The id of each loaded file and color key, so a file is only loaded 
+     * once.
+     */
+    private final Map<String, Integer> spriteIds = new HashMap<String, Integer>();
+    
+    /**
+     * The Graphics for the drawBuffer.
+     * This is updated automatically by the resetBuffers method.
+     * @see #drawBuffer
+     */
+    private Graphics2D drawGraphics;
+    
+    /**
+     * Renders directly into the pixels of the drawBuffer.
+     * This is updated automatically by the resetBuffers method.
+     * @see #drawBuffer
+     */
+    private Rasterizer drawRaster;
+    
+    /**
+     * Renders directly into the pixels of the backBuffer.
+     * This is updated automatically by the resetBuffers method.
+     * @see #backBuffer
+     */
+    private Rasterizer backRaster;
+    
+    /**
+     * The Graphics for the backBuffer.
+     * This is updated automatically by the resetBuffers method.
+     * @see #backBuffer
+     */
+    private Graphics backGraphics;
+    
+    /**
+     * The printable ASCII characters of f, rendered once.
+     * Text made of these characters is copied from here instead of being
+     * rendered by Graphics.drawString.
+     */
+    private final GlyphAtlas glyphs;
+    
+    /**
+     * The area of the screen changed since the backBuffer was last updated.
+     * Every command that changes the screen adds to it, and only this area
+     * of the backBuffer is recomposed.
+     * @see #updateBackBuffer()
+     */
+    private final DirtyRegion dirty;
 	
 	/**
-	 * Represents a soft new line break.
-	 * This Pair is found in the formatedPrintBuffer.  It 
-	 * separates long lines of text on to new lines.
-	 * @see #softBreak
-     * @see #formatedPrintBuffer
+	 * Holds the input from print commands, already broken into lines.
+	 * The runs of text also store the foreground color they were printed 
+	 * with, for rendering later.  The clear command empties this layout.
+	 * Only used holding publishLock.
 	 */
-	private static final Pair<Color, StringBuffer> softBreak = null;
+	private final PrintLayout printLayout;
 	
 	/**
 	 * The inital width of the screen.
@@ -138,8 +387,12 @@ final class Screen extends JComponent {
 	
 	/**
 	 * The fixed-width font used to render print and text commands.
+	 * If Courier New is not installed, Java silently substitutes a 
+	 * proportional font, so the logical monospaced font is used instead.
 	 */
-	private static final Font f = new Font("Courier New", Font.PLAIN, 12);
+	private static final Font f = new Font("Courier New", Font.PLAIN, 12).getFamily().equals("Courier New")
+	        ? new Font("Courier New", Font.PLAIN, 12)
+	        : new Font(Font.MONOSPACED, Font.PLAIN, 12);
 
     /**
      * Inital zoom factor.
@@ -162,11 +415,33 @@ final class Screen extends JComponent {
 	private final int charAscent;
 	
 	/**
-	 * The current foreground color.
+	 * The current foreground color as a packed opaque ARGB value.
 	 * This variable should not be set directly in any method other than 
 	 * color().
 	 */
+	private int fgRGB;
+	
+	/**
+	 * The current foreground color as a Color.
+	 * It is created lazily by foreground() and is null until a Graphics2D
+	 * operation or a print command needs it.
+	 * @see #foreground()
+	 */
 	private Color fgColor;
+    
+    /**
+     * The color last set on drawGraphics.
+     * @see #foregroundGraphics()
+     */
+    private Color drawGraphicsColor;
+    
+    /**
+     * The current line thickness.
+     * The Rasterizer is only used for the default thickness of 1, thicker
+     * lines are rendered by drawGraphics.
+     * @see #thickness(int)
+     */
+    private int strokeWidth;
 	
 	/**
 	 * The current background color.
@@ -199,235 +474,684 @@ final class Screen extends JComponent {
 	public Screen() {
 		super();
 		setLayout(null);
+		dirty = new DirtyRegion(INITAL_WIDTH, INITAL_HEIGHT);
 		fgColor = INITAL_FOREGROUND;
+		fgRGB = fgColor.getRGB();
+		drawGraphicsColor = null;
+		strokeWidth = 1;
 		bgColor = INITAL_BACKGROUND;
 		
 		FontMetrics fm = getFontMetrics(f);
 		charWidth = fm.charWidth('a');
 		charHeight = fm.getHeight();
 		charAscent = fm.getAscent();
+		glyphs = new GlyphAtlas(f, fm);
 		
-		printBuffer = new LinkedList<Pair<Color, StringBuffer>>();
-		lastPrint = new Pair<Color, StringBuffer>(fgColor, new StringBuffer());
-		printBuffer.add(lastPrint);
-		formatedPrintBuffer = new LinkedList<Pair<Color, StringBuffer>>();
+		printLayout = new PrintLayout(INITAL_WIDTH/charWidth, linesPerHeight(INITAL_HEIGHT));
 		
         zoomFactor = INITAL_ZOOMFACTOR;
 		screen(INITAL_WIDTH, INITAL_HEIGHT);
+		
+		for(int i = 0; i < FRAME_HISTORY; i++) {
+		    history[i] = new Rectangle();
+		}
+		backFrame = new FrameBuffer(INITAL_WIDTH, INITAL_HEIGHT, zoomFactor);
+		readyFrame = new AtomicReference<FrameBuffer>(new FrameBuffer(INITAL_WIDTH, INITAL_HEIGHT, zoomFactor));
+		paintFrame = new FrameBuffer(INITAL_WIDTH, INITAL_HEIGHT, zoomFactor);
 	}
 	
 	/**
-	 * Creates a new buffer set.
-	 * The fields backBuffer and drawBuffer are initalized with
-	 * new BufferedImage objects.  IE. The old buffers are lost.  drawGraphics
-     * is also updated to the new drawBuffer's Graphics as a side affect.
+	 * Creates a new buffer set of the current size.
+	 * The fields backBuffer and the layers are replaced by images from the
+	 * pool, and what was drawn on each layer is copied to its new image.
+	 * The old images are put in the pool.  drawGraphics and drawRaster are
+	 * also updated to the new drawBuffer as a side affect.
      * 
      * @see #backBuffer
      * @see #drawBuffer
      * @see #drawGraphics
+     * @see #drawRaster
 	 */
 	private void resetBuffers() {
-		backBuffer = new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
-		drawBuffer = new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_ARGB);
-        
-        drawGraphics = (Graphics2D) drawBuffer.getGraphics();
-		clearBuffers();
+		BufferedImage oldBack = backBuffer;
+		backBuffer = pool.get(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
+        backRaster = new Rasterizer(backBuffer);
+        backGraphics = backBuffer.getGraphics();
+        for(int i = 0; i < LAYERS; i++) {
+            Layer old = layers[i];
+            if(i == 0 || old != null) {
+                layers[i] = new Layer(pool.get(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_ARGB));
+            }
+            if(old != null) {
+                copyLayer(old, layers[i]);
+                pool.put(old.image);
+            }
+        }
+        pool.put(oldBack);
+        pool.put(cache);
+        selectLayer(currentLayer);
+        cache = null;
+        cacheRaster = null;
+        cacheGraphics = null;
+        cachedLevels = 0;
+        for(int i = 0; i < levelChanges.length; i++) {
+            levelChanges[i]++;
+        }
 	}
 	
 	/**
-	 * Clears all buffers.
-	 * The backBuffer is reset to bgColor.
-     * 
-     *  @see #backBuffer
-     *  @see #bgColor
+	 * Copies what was drawn on layer from to the same place on layer to, 
+	 * as far as it fits.
+	 */
+	private static void copyLayer(Layer from, Layer to) {
+        int x0 = Math.max(0, from.minX);
+        int y0 = Math.max(0, from.minY);
+        int x1 = Math.min(Math.min(from.image.getWidth(), to.image.getWidth()), from.maxX);
+        int y1 = Math.min(Math.min(from.image.getHeight(), to.image.getHeight()), from.maxY);
+        if(x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        int[] src = from.raster.getPixels();
+        int[] dst = to.raster.getPixels();
+        int srcWidth = from.raster.getWidth();
+        int dstWidth = to.raster.getWidth();
+        for(int y = y0; y < y1; y++) {
+            System.arraycopy(src, y*srcWidth + x0, dst, y*dstWidth + x0, x1 - x0);
+        }
+        to.drawn(x0, y0, x1 - 1, y1 - 1);
+	}
+	
+	/**
+	 * Makes layer n the layer draw commands go to.  drawBuffer, drawGraphics
+	 * and drawRaster are updated to it.
+	 */
+	private void selectLayer(int n) {
+        currentLayer = n;
+        drawBuffer = layers[n].image;
+        drawGraphics = layers[n].graphics;
+        drawGraphicsColor = null;
+        drawGraphics.setStroke(new BasicStroke(strokeWidth));
+        drawRaster = layers[n].raster;
+	}
+	
+	/**
+	 * Clears every layer to transparent, in place.
+	 * Only the area drawn on each layer is cleared.  The backBuffer is not
+	 * touched, the caller must mark the whole screen dirty so it is 
+	 * composed again.
 	 */
 	private void clearBuffers() {
-		Graphics g = backBuffer.getGraphics();
-		g.setColor(bgColor);
-		g.fillRect(0, 0, bufferWidth, bufferHeight);
-
-        drawGraphics.setColor(TRANSPARENT);
-        drawGraphics.fillRect(0, 0, bufferWidth, bufferHeight);
-        drawGraphics.setColor(fgColor);
+        for(int i = 0; i < LAYERS; i++) {
+            Layer l = layers[i];
+            if(l == null || l.minX >= l.maxX) {
+                continue;
+            }
+            int x0 = Math.max(0, l.minX);
+            int y0 = Math.max(0, l.minY);
+            int x1 = Math.min(bufferWidth, l.maxX);
+            int y1 = Math.min(bufferHeight, l.maxY);
+            if(x0 < x1 && y0 < y1) {
+                l.raster.fillRect(x0, y0, x1 - x0, y1 - y0, TRANSPARENT.getRGB());
+            }
+            l.cleared();
+            levelChanges[i + 1]++;
+        }
+        levelChanges[0]++;
 	}
 
 	/**
-	 * Paints the visual commands.
+	 * Paints the latest published frame.
+	 * Nothing is composed here, the frame was completed by publish(), so
+	 * painting never waits for the program.
+	 * 
+	 * @see #publish()
 	 */
 	public void paint(Graphics g) {
-		updateBackBuffer();
-        if(zoomFactor > 1) {
-            g.drawImage(backBuffer.getScaledInstance(zoomFactor*bufferWidth, zoomFactor*bufferHeight, Image.SCALE_REPLICATE), 0, 0, null);
-        } else {
-            g.drawImage(backBuffer, 0, 0, null);
+        if(readyFrame.get().sequence > paintFrame.sequence) {
+            FrameBuffer latest = readyFrame.getAndSet(paintFrame);
+            if(paintFrame.sequence > 0) {
+                droppedFrames += latest.sequence - paintFrame.sequence - 1;
+            }
+            paintFrame = latest;
+        }
+        long start = System.nanoTime();
+        g.drawImage(paintFrame.image, 0, 0, null);
+        paintedFrame = paintFrame.sequence;
+        counters.paint.recordSince(start);
+        if(paintWaiters > 0) {
+            synchronized(paintLock) {
+                paintLock.notifyAll();
+            }
         }
 	}
 	
+	/**
+	 * Waits until frame sequence, or a later one, has been painted, but 
+	 * no longer than timeout nanoseconds.
+	 * 
+	 * @return true if the frame was painted
+	 */
+	public boolean awaitPainted(long sequence, long timeout) {
+        if(paintedFrame >= sequence) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeout;
+        synchronized(paintLock) {
+            paintWaiters++;
+            try {
+                while(paintedFrame < sequence) {
+                    long left = deadline - System.nanoTime();
+                    if(left <= 0) {
+                        return false;
+                    }
+                    try {
+                        paintLock.wait(left/1000000, (int) (left%1000000));
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                paintWaiters--;
+            }
+        }
+	}
+	
+	/**
+	 * Publishes a new frame, if anything changed since the last one.
+	 * The dirty region is composed in the backBuffer and copied into 
+	 * backFrame, which is then exchanged with readyFrame and repainted.
+	 * The event dispatch thread only ever paints complete frames, and the
+	 * caller never waits for painting.
+	 */
+	void publish() {
+        synchronized(publishLock) {
+            long start = System.nanoTime();
+            Rectangle r = updateBackBuffer();
+            if(r == null) {
+                return;
+            }
+            counters.compose.recordSince(start);
+            long sequence = publishedFrames + 1;
+            history[(int) (sequence%FRAME_HISTORY)].setBounds(r);
+            
+            FrameBuffer f = backFrame;
+            if(!f.fits(bufferWidth, bufferHeight, zoomFactor)) {
+                // a frame of an earlier size or zoom, exchange it in the pool
+                pool.put(f.image);
+                f = new FrameBuffer(pool.get(zoomFactor*bufferWidth, zoomFactor*bufferHeight, BufferedImage.TYPE_INT_RGB), zoomFactor);
+            }
+            start = System.nanoTime();
+            Rasterizer.zoom(backRaster, f.raster, zoomFactor, changedSince(f.sequence, sequence));
+            counters.zoom.recordSince(start);
+            f.sequence = sequence;
+            backFrame = readyFrame.getAndSet(f);
+            publishedFrames = sequence;
+            repaint(zoomFactor*r.x, zoomFactor*r.y, zoomFactor*r.width, zoomFactor*r.height);
+        }
+	}
+	
+	/**
+	 * Returns the area that changed after frame from up to frame to.
+	 * If from is too old to be in the history, the whole screen is returned.
+	 * The returned Rectangle is reused by the next call.
+	 */
+	private Rectangle changedSince(long from, long to) {
+        if(from == 0 || to - from > FRAME_HISTORY) {
+            changed.setBounds(0, 0, bufferWidth, bufferHeight);
+            return changed;
+        }
+        changed.setBounds(history[(int) (to%FRAME_HISTORY)]);
+        for(long i = from + 1; i < to; i++) {
+            changed.add(history[(int) (i%FRAME_HISTORY)]);
+        }
+        return changed;
+	}
+	
+	/**
+	 * Returns the sequence number of the last published frame.
+	 */
+	public long getPublishedFrames() {
+        return publishedFrames;
+	}
+	
+	/**
+	 * Returns the sequence number of the last painted frame.
+	 */
+	public long getPaintedFrame() {
+        return paintedFrame;
+	}
+	
+	/**
+	 * Returns the number of published frames that were never painted.
+	 */
+	public long getDroppedFrames() {
+        return droppedFrames;
+	}
+	
+	/**
+	 * Returns a snapshot of what this screen has drawn and how long it took.
+	 */
+	public RenderStats stats() {
+        return new RenderStats(counters, publishedFrames, paintedFrame, droppedFrames);
+	}
+	
 	/**
 	 * Updates the back buffer.
-	 * Here is where print commands and drawBuffer is composed on the 
-     * backBuffer.
+	 * Here is where print commands and the layers are composed on the 
+     * backBuffer.  Only the dirty region is recomposed, the rest of the
+     * backBuffer is already up to date.
+     * 
+     * The levels below the first one that changed recently are copied from
+     * the cache, so a static background is not composed again every frame.
      * 
+     * @return the area of the backBuffer that was updated, reused by the
+     * next call, or null if nothing changed
      * @see #drawBuffer
      * @see #backBuffer
+     * @see #dirty
+	 */
+	private Rectangle updateBackBuffer() {
+        Rectangle r = updated;
+        if(!dirty.take(r)) {
+            return null;
+        }
+        int levels = 1;
+        for(int i = 0; i < LAYERS; i++) {
+            if(layers[i] != null) {
+                levels = i + 2;
+            }
+        }
+        int quiet = levels;
+        for(int level = 0; level < levels; level++) {
+            int changes = levelChanges[level];
+            if(changes != composedChanges[level]) {
+                composedChanges[level] = changes;
+                quietFrames[level] = 0;
+                if(level < cachedLevels) {
+                    // the cache has the old pixels of this level
+                    cachedLevels = 0;
+                }
+            } else if(quietFrames[level] < CACHE_AFTER) {
+                quietFrames[level]++;
+            }
+            if(quietFrames[level] < CACHE_AFTER) {
+                quiet = Math.min(quiet, level);
+            }
+        }
+        if(quiet > cachedLevels) {
+            if(cache == null) {
+                cache = pool.get(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
+                cacheRaster = new Rasterizer(cache);
+                cacheGraphics = cache.getGraphics();
+            }
+            compose(cacheGraphics, cacheRaster, cachedLevels, quiet, new Rectangle(0, 0, bufferWidth, bufferHeight));
+            cachedLevels = quiet;
+        }
+        if(cachedLevels > 0) {
+            Rasterizer.zoom(cacheRaster, backRaster, 1, r);
+        }
+        compose(backGraphics, backRaster, cachedLevels, levels, r);
+		return r;
+	}
+	
+	/**
+	 * Composes the levels from up to, but not including, to over the 
+	 * rectangle r of the image of g and raster.  If from is 0, r is first 
+	 * filled with the background color and the printed text.
 	 */
-	public void updateBackBuffer() {
-        formatPrintBuffer();
-        
-		Graphics g = backBuffer.getGraphics();
-        int x = 0;
-        int y = 0;
-        
-        g.setColor(bgColor);
-        g.fillRect(0, 0, bufferWidth, bufferHeight);
-        g.setFont(f);
-        Pair<Color, StringBuffer> p;
-        synchronized(formatedPrintBuffer) {
-            Iterator<Pair<Color, StringBuffer>> it = formatedPrintBuffer.iterator();
-            while(it.hasNext()) {
-                p = it.next();
-                if(p != hardBreak && p != softBreak) {
-                    g.setColor(p.getX());
-                    g.drawString(p.getY().toString(), x, y + charAscent);
-                    x += charWidth*p.getY().length();                       
-                } else {
-                    x = 0;
-                    y += charHeight;                        
+	private void compose(Graphics g, Rasterizer raster, int from, int to, Rectangle r) {
+        if(from == 0) {
+            boolean clipped = false;
+            raster.setClip(r);
+            raster.fillRect(r.x, r.y, r.width, r.height, bgColor.getRGB());
+            // only the lines inside the dirty region are drawn
+            int first = r.y/charHeight;
+            int last = Math.min(printLayout.lineCount() - 1, (r.y + r.height - 1)/charHeight);
+            for(int i = first; i <= last; i++) {
+                int x = 0;
+                int y = i*charHeight;
+                PrintLayout.Line line = printLayout.line(i);
+                for(int j = 0; j < line.runCount; j++) {
+                    int start = line.runStart(j);
+                    int end = line.runEnd(j);
+                    int length = end - start;
+                    if(x < r.x + r.width && x + charWidth*length > r.x) {
+                        if(glyphs.containsAll(line, start, end)) {
+                            raster.text(glyphs, x, y, line, start, end, line.runColor(j));
+                        } else {
+                            if(!clipped) {
+                                g.setClip(r.x, r.y, r.width, r.height);
+                                g.setFont(f);
+                                clipped = true;
+                            }
+                            g.setColor(new Color(line.runColor(j), true));
+                            g.drawString(line.subSequence(start, end).toString(), x, y + charAscent);
+                        }
+                    }
+                    x += charWidth*length;
+                }
+            }
+        }
+        for(int level = Math.max(1, from); level < to; level++) {
+            Layer l = layers[level - 1];
+            if(l != null) {
+                // only the part of r drawn on since the layer was cleared
+                int x0 = Math.max(r.x, l.minX);
+                int y0 = Math.max(r.y, l.minY);
+                int x1 = Math.min(r.x + r.width, l.maxX);
+                int y1 = Math.min(r.y + r.height, l.maxY);
+                if(x0 < x1 && y0 < y1) {
+                    Rasterizer.over(l.raster, raster, x0, y0, x1 - x0, y1 - y0);
                 }
             }
         }
-		g.drawImage(drawBuffer, 0, 0, null);
+	}
+	
+	/**
+	 * Returns the number of levels composed from the cache, for testing.
+	 */
+	int getCachedLevels() {
+        synchronized(publishLock) {
+            return cachedLevels;
+        }
 	}
     
     /**
-     * Just calls repaint.
+     * Marks the rectangle from (x0, y0) to (x1, y1) dirty.
+     * The rectangle is grown by the line thickness, and clamped to the 
+     * screen so huge coordinates do not overflow.
+     */
+    private void markDirty(long x0, long y0, long x1, long y1) {
+        int pad = (strokeWidth == 1)?0:strokeWidth/2 + 1;
+        markDrawn(clamp(x0 - pad, bufferWidth), clamp(y0 - pad, bufferHeight), 
+                clamp(x1 + pad, bufferWidth), clamp(y1 + pad, bufferHeight));
+    }
+    
+    /**
+     * Returns v clamped to one pixel outside 0 to size - 1.
+     */
+    private static int clamp(long v, int size) {
+        return (int) Math.max(-1, Math.min(v, size));
+    }
+    
+    /**
+     * Marks the rectangle from (x0, y0) to (x1, y1) of the current layer
+     * changed.  Must be called holding publishLock.
+     */
+    private void markDrawn(int x0, int y0, int x1, int y1) {
+        layers[currentLayer].drawn(x0, y0, x1, y1);
+        levelChanges[currentLayer + 1]++;
+        dirty.add(x0, y0, x1, y1);
+    }
+    
+    /**
+     * Publishes a new frame, if anything changed.
+     * Without a display list the frame is published before this returns,
+     * on the calling thread.  With a display list, the render thread 
+     * publishes the frame once it has drawn every command recorded so far,
+     * and this returns at once.
      * 
-     * @see #paint
+     * @see #publish()
      */
     public void flush() {
-        repaint();
+        DisplayList d = displayList;
+        if(d != null) {
+            d.flush();
+        } else {
+            publish();
+        }
     }
-	
-	/**
-	 * Formats printBuffer into formatedPrintBuffer.
-	 * Any Pair in the printBuffer with the character '\n' in the String is
-	 * separated into two Pairs and a hardBreak between them.  If the String in
-	 * the Pair is longer than the width of the screen minus the current 
-	 * position of the cursor, it is separated into Pairs, so not to exceede 
-	 * the screen width.  Between every new pair is a softBreak.  Otherwise, 
-	 * Pair is just copied.  The result is stored in the formatedPrintBuffer.
-	 * If the total number of lines in the formatedPrintBuffer exceedes the 
-	 * current height of the screen, then the lines at the top are trucated 
-	 * until the total number of lines is equal to the current height of the 
-	 * screen.  If this height trunction occurs, printBuffer is updated 
-	 * accordingly.  IE. The oldest data in the printBuffer is lost.
+    
+    /**
+     * Turns the display list on or off.
+     * While it is on, draw commands, print and backspace, and the color and
+     * thickness they use are only recorded, and a render thread draws them.
+     * Every other command first waits for the render thread to catch up, so
+     * commands still take effect in the order they were given.
      * 
-	 * @see #formatedPrintBuffer
-     * @see #printBuffer
-     * @see #hardBreak
-     * @see #softBreak
-	 */
-	private void formatPrintBuffer() {
-		final int charsPerWidth = bufferWidth/charWidth;
-		synchronized(formatedPrintBuffer) {
-			formatedPrintBuffer.clear();
-			
-			Iterator<Pair<Color, StringBuffer>> it = printBuffer.iterator();
-			StringTokenizer st;
-			String s;
-			int nLines = 0;
-			Pair<Color, StringBuffer> curr;
-			int cursorX = 0;
-			while(it.hasNext()) {
-				curr = it.next();
-				st = new StringTokenizer(curr.getY().toString(), "\n", true);
-				while(st.hasMoreTokens()) {
-					s = st.nextToken();
-					if(s.equals("\n")) {
-						formatedPrintBuffer.add(hardBreak);
-						cursorX = 0;
-						nLines++;
-					} else {
-    					while(charWidth*(s.length() + cursorX) > bufferWidth) {
-    						formatedPrintBuffer.add(new Pair<Color, StringBuffer>(curr.getX(), new StringBuffer(s.substring(0, charsPerWidth - cursorX))));
-    						s = s.substring(charsPerWidth - cursorX);
-    						formatedPrintBuffer.add(softBreak);
-    						cursorX = 0;
-    						nLines++;
-    					}
-    					formatedPrintBuffer.add(new Pair<Color, StringBuffer>(curr.getX(), new StringBuffer(s)));
-    					cursorX += s.length();
-                    }
-				}
-			}
-
-			if(nLines > 0 && nLines*charHeight >= bufferHeight) {
-				while(nLines*charHeight >= getHeight()) {
-					while(formatedPrintBuffer.get(0) != hardBreak && formatedPrintBuffer.get(0) != softBreak) {
-						formatedPrintBuffer.remove(0);
-					}
-					formatedPrintBuffer.remove(0);
-					nLines--;
-				}
-				printBuffer.clear();
-				it = formatedPrintBuffer.iterator();
-				Pair<Color, StringBuffer> last = new Pair<Color, StringBuffer>(fgColor, new StringBuffer());
-				printBuffer.add(last);
-				while(it.hasNext()) {
-					curr = it.next();
-					if(curr == hardBreak) {
-						last.getY().append("\n");
-					} else if(curr == softBreak) {
-						if(it.hasNext()) {
-							curr = it.next();
-							last.getY().append(curr.getY().toString());
-						}
-					} else {
-						printBuffer.add(curr);
-						last = curr;
-					}
-				}
-				lastPrint = last;
-			}
-		}
-	}
-
+     * @see DisplayList
+     */
+    public void displayList(boolean on) {
+        DisplayList d = displayList;
+        if(on && d == null) {
+            int threads = Integer.getInteger("basicj.renderThreads", Runtime.getRuntime().availableProcessors());
+            if(threads > 1) {
+                tiler = new TiledRasterizer(threads);
+            }
+            d = new DisplayList(this);
+            d.start();
+            displayList = d;
+        } else if(!on && d != null) {
+            displayList = null;
+            d.stop();
+            if(tiler != null) {
+                tiler.shutdown();
+                tiler = null;
+            }
+        }
+    }
+    
+    /**
+     * Starts a batch of draw commands from the display list.
+     * Until endBatch(), primitives of the default thickness are binned by
+     * the tiler and rasterized on several threads at once.
+     * 
+     * @see TiledRasterizer
+     */
+    void beginBatch() {
+        if(tiler != null) {
+            tiler.begin(drawRaster);
+            batch = tiler;
+        }
+    }
+    
+    /**
+     * Ends a batch, once all its primitives are rasterized.
+     */
+    void endBatch() {
+        if(batch != null) {
+            batch.rasterize();
+            batch = null;
+        }
+    }
+    
+    /**
+     * Rasterizes the primitives recorded so far in this batch.
+     * Must be called before drawing anything that does not go through the
+     * batch, to keep the draw order.
+     */
+    private void rasterizeBatch() {
+        if(batch != null) {
+            batch.rasterize();
+        }
+    }
+    
+    /**
+     * Waits until the render thread has drawn every recorded command.
+     * Does nothing without a display list.
+     */
+    private void finish() {
+        DisplayList d = displayList;
+        if(d != null) {
+            d.finish();
+        }
+    }
+	
 	/**
 	 * Implements the clear command.
 	 * All print and draw commands are lost.  The foreground and background
 	 * colors are unchanged.
 	 */
 	public void clear() {
-		printBuffer.clear();
-		lastPrint = new Pair<Color, StringBuffer>(fgColor, new StringBuffer());
-		printBuffer.add(lastPrint);
-		formatedPrintBuffer.clear();
-		resetBuffers();
+		finish();
+		synchronized(publishLock) {
+		    printLayout.clear();
+		    clearBuffers();
+		}
+		dirty.addAll();
         flush();
 	}
 	
+	/**
+	 * Implements the layer command.
+	 * Draw commands after this go to layer n, which is created if needed.
+	 * 
+	 * @param n must be from 0 to LAYERS - 1
+	 */
+	public void layer(int n) {
+        DisplayList d = displayList;
+        if(d != null) {
+            d.layer(DisplayList.LAYER, n);
+        } else {
+            synchronized(publishLock) {
+                drawLayer(n);
+            }
+        }
+	}
+	
+	/**
+	 * Selects a layer, for layer().
+	 */
+	void drawLayer(int n) {
+        if(n == currentLayer) {
+            return;
+        }
+        rasterizeBatch();
+        if(layers[n] == null) {
+            synchronized(publishLock) {
+                layers[n] = new Layer(pool.get(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_ARGB));
+            }
+        }
+        selectLayer(n);
+        if(batch != null) {
+            batch.begin(drawRaster);
+        }
+	}
+	
+	/**
+	 * Implements the clearLayer command.
+	 * Only the area drawn since the layer was last cleared is cleared and
+	 * composed again.  The other layers and the printed text are unchanged.
+	 * 
+	 * @param n must be from 0 to LAYERS - 1
+	 */
+	public void clearLayer(int n) {
+        DisplayList d = displayList;
+        if(d != null) {
+            d.layer(DisplayList.CLEAR_LAYER, n);
+        } else {
+            synchronized(publishLock) {
+                drawClearLayer(n);
+            }
+        }
+	}
+	
+	/**
+	 * Clears a layer, for clearLayer().
+	 */
+	void drawClearLayer(int n) {
+        Layer l = layers[n];
+        if(l == null || l.minX >= l.maxX) {
+            return;
+        }
+        rasterizeBatch();
+        int x0 = Math.max(0, l.minX);
+        int y0 = Math.max(0, l.minY);
+        int x1 = Math.min(bufferWidth, l.maxX);
+        int y1 = Math.min(bufferHeight, l.maxY);
+        if(x0 < x1 && y0 < y1) {
+            l.raster.fillRect(x0, y0, x1 - x0, y1 - y0, TRANSPARENT.getRGB());
+            levelChanges[n + 1]++;
+            dirty.add(x0, y0, x1 - 1, y1 - 1);
+        }
+        l.cleared();
+	}
+	
 	/**
 	 * Implements the color command, with optinal background.
 	 * Sets the background color to c.
 	 */
 	public void clear(Color c) {
-		bgColor = c;
+		finish();
+		synchronized(publishLock) {
+		    bgColor = c;
+		}
 		clear();
 	}
 	
 	/**
 	 * Implements the color command.
-	 * The foreground color is set to c.
+	 * The foreground color is set to rgb.  No Color is created until one is
+	 * needed, so calling this does not allocate.
+	 * 
+	 * @param rgb the packed RGB color, the alpha bits are ignored
 	 */
-	public void color(Color c) {
-		fgColor = c;
-        drawGraphics.setColor(fgColor);
+	public void color(int rgb) {
+        DisplayList d = displayList;
+        if(d != null) {
+            d.color(rgb);
+        } else {
+            drawColor(rgb);
+        }
+	}
+	
+	/**
+	 * Sets the foreground color, for color().
+	 */
+	void drawColor(int rgb) {
+        rgb |= 0xFF000000;
+        if(rgb != fgRGB) {
+            fgRGB = rgb;
+            fgColor = null;
+        }
 	}
     
+    /**
+     * Returns the foreground color as a Color.
+     * The Color is only created on the first call after the foreground 
+     * color has changed.
+     */
+    private Color foreground() {
+        if(fgColor == null) {
+            fgColor = new Color(fgRGB);
+        }
+        return fgColor;
+    }
+    
+    /**
+     * Returns drawGraphics with its color set to the foreground color.
+     * All Graphics2D draw commands must go through here, since color() does
+     * not update drawGraphics.
+     */
+    private Graphics2D foregroundGraphics() {
+        rasterizeBatch();
+        Color c = foreground();
+        if(drawGraphicsColor != c) {
+            drawGraphics.setColor(c);
+            drawGraphicsColor = c;
+        }
+        return drawGraphics;
+    }
+    
     /**
      * Implements the thickness command.
      */
     public void thickness(int width) {
+        DisplayList d = displayList;
+        if(d != null) {
+            d.thickness(width);
+        } else {
+            drawThickness(width);
+        }
+    }
+    
+    /**
+     * Sets the thickness, for thickness().
+     */
+    void drawThickness(int width) {
+        strokeWidth = width;
         drawGraphics.setStroke(new BasicStroke(width));
     }
     
@@ -449,22 +1173,43 @@ final class Screen extends JComponent {
         return bufferHeight;
 	}
 	
+	/**
+	 * Returns the number of characters of printed text that fit on a line.
+	 */
+	int textColumns() {
+        return Math.max(1, bufferWidth/charWidth);
+	}
+	
+	/**
+	 * Returns the number of whole lines of printed text that fit on the 
+	 * screen.
+	 */
+	int textRows() {
+        return Math.max(1, bufferHeight/charHeight);
+	}
+	
 	/**
 	 * Implements the screen command.
      * The screen is resized to the new width and height.  If there was
-     * anything drawn, then it is copied to the new drawBuffer.
+     * anything drawn, then it is copied to the new drawBuffer.  The buffers
+     * of the old size are kept in the pool, so switching back to it does not
+     * allocate them again.
      * 
 	 * @param width the new width
 	 * @param height the new height
 	 */
 	public void screen(int width, int height) {
-        bufferWidth = width;
-        bufferHeight = height;
-        zoom(zoomFactor);
-		
-		BufferedImage tempDrawBuffer = drawBuffer;
-		resetBuffers();
-        drawGraphics.drawImage(tempDrawBuffer, 0, 0, null);
+        finish();
+        synchronized(publishLock) {
+            bufferWidth = width;
+            bufferHeight = height;
+            zoom(zoomFactor);
+            
+            resetBuffers();
+            printLayout.setSize(width/charWidth, linesPerHeight(height));
+            dirty.setSize(width, height);
+            dirty.addAll();
+        }
 	}
 
 	/**
@@ -472,69 +1217,434 @@ final class Screen extends JComponent {
 	 * All other types can be casted to type String.
 	 */
 	public void print(String s) {
-		if(lastPrint.getX() == fgColor) {
-			lastPrint.getY().append(s);
+		counters.prints++;
+		DisplayList d = displayList;
+		if(d != null) {
+		    d.print(s);
 		} else {
-			lastPrint = new Pair<Color, StringBuffer>(fgColor, new StringBuffer(s));
-			printBuffer.add(lastPrint);
+		    synchronized(publishLock) {
+		        drawPrint(s);
+		    }
 		}
 	}
+	
+	/**
+	 * Prints s, for print().
+	 */
+	void drawPrint(String s) {
+		long start = System.nanoTime();
+		int first = printLayout.print(fgRGB, s);
+		counters.layout.recordSince(start);
+		markLinesDirty(first);
+	}
     
     /**
      * Deletes the latest printed character iff it matches c.
      */
     public void backspace(char c) {
-        while(printBuffer.size() > 1 && lastPrint.getY().length() == 0) {
-            printBuffer.removeLast();
-            lastPrint = printBuffer.getLast();
+        DisplayList d = displayList;
+        if(d != null) {
+            d.backspace(c);
+        } else {
+            synchronized(publishLock) {
+                drawBackspace(c);
+            }
         }
-        StringBuffer lastString = lastPrint.getY();
-        if(lastString.charAt(lastString.length() - 1) == c) {
-            lastString.deleteCharAt(lastString.length() - 1);
+    }
+    
+    /**
+     * Deletes a character, for backspace().
+     */
+    void drawBackspace(char c) {
+        int changed = printLayout.backspace(c);
+        if(changed != -1) {
+            markLinesDirty(changed);
         }
     }
+    
+    /**
+     * Marks the lines of text from line first to the last line dirty.
+     * Must be called holding publishLock.
+     */
+    private void markLinesDirty(int first) {
+        levelChanges[0]++;
+        dirty.add(0, first*charHeight, bufferWidth - 1, printLayout.lineCount()*charHeight - 1);
+    }
+    
+    /**
+     * Returns the number of lines of text that fit in height, including a
+     * partly visible last line.
+     */
+    private int linesPerHeight(int height) {
+        return (height + charHeight - 1)/charHeight;
+    }
 	
 	/**
 	 * Implements the point command.
+	 * Points of the default thickness are written directly into the
+	 * drawBuffer, which gives the same pixel as drawLine(x, y, x, y).
 	 */
 	public void point(int x, int y) {
-        drawGraphics.drawLine(x, y, x, y);
+        counters.points++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.point(x, y);
+        } else {
+            synchronized(publishLock) {
+                drawPoint(x, y);
+            }
+        }
+	}
+	
+	/**
+	 * Draws a point, for point().
+	 */
+	void drawPoint(int x, int y) {
+        if(strokeWidth == 1) {
+            if(batch != null) {
+                batch.point(x, y, fgRGB);
+            } else {
+                drawRaster.point(x, y, fgRGB);
+            }
+        } else {
+            foregroundGraphics().drawLine(x, y, x, y);
+        }
+        markDirty(x, y, x, y);
+	}
+	
+	/**
+	 * Implements the points command.
+	 * If rgb is null, the points are drawn in the foreground color.
+	 */
+	public void points(int[] xs, int[] ys, int[] rgb, int count) {
+        // the arrays may change once this returns, so they are not recorded
+        finish();
+        counters.pointsBatches++;
+        if(count == 0) {
+            return;
+        }
+        synchronized(publishLock) {
+            if(strokeWidth == 1) {
+                drawRaster.points(xs, ys, rgb, count, fgRGB);
+            } else {
+                Graphics2D g = foregroundGraphics();
+                for(int i = 0; i < count; i++) {
+                    if(rgb != null) {
+                        g.setColor(new Color(rgb[i]));
+                        drawGraphicsColor = null;
+                    }
+                    g.drawLine(xs[i], ys[i], xs[i], ys[i]);
+                }
+            }
+            int minX = xs[0];
+            int minY = ys[0];
+            int maxX = minX;
+            int maxY = minY;
+            for(int i = 1; i < count; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            markDirty(minX, minY, maxX, maxY);
+        }
+	}
+	
+	/**
+	 * Implements the shade command.
+	 * The pixels are written straight into the drawBuffer, on all 
+	 * processors.
+	 * 
+	 * @see Shader
+	 */
+	public void shade(PixelFunction f, int x, int y, int width, int height) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        finish();
+        counters.shades++;
+        synchronized(publishLock) {
+            Shader.shade(drawRaster, f, x, y, width, height);
+            markDirty(x, y, (long) x + width - 1, (long) y + height - 1);
+        }
 	}
 	
 	/**
 	 * Implements the line command.
+	 * Lines of the default thickness are rasterized directly into the 
+	 * drawBuffer, only thicker lines go through drawGraphics.
 	 */
 	public void line(int x0, int y0, int x1, int y1) {
-        drawGraphics.drawLine(x0, y0, x1, y1);
+        counters.lines++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.line(x0, y0, x1, y1);
+        } else {
+            synchronized(publishLock) {
+                drawLine(x0, y0, x1, y1);
+            }
+        }
+	}
+	
+	/**
+	 * Draws a line, for line().
+	 */
+	void drawLine(int x0, int y0, int x1, int y1) {
+        if(strokeWidth == 1) {
+            if(batch != null) {
+                batch.line(x0, y0, x1, y1, fgRGB);
+            } else {
+                drawRaster.line(x0, y0, x1, y1, fgRGB);
+            }
+        } else {
+            foregroundGraphics().drawLine(x0, y0, x1, y1);
+        }
+        markDirty(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
 	}
 	
 	/**
 	 * Implements the circle command.
+	 * Circles of the default thickness are rasterized directly into the 
+	 * drawBuffer from a cached CircleTable.
 	 */
 	public void circle(int x, int y, int r) {
+        counters.circles++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.circle(DisplayList.CIRCLE, x, y, r);
+        } else {
+            synchronized(publishLock) {
+                drawCircle(x, y, r);
+            }
+        }
+	}
+	
+	/**
+	 * Draws a circle, for circle().
+	 */
+	void drawCircle(int x, int y, int r) {
 		if(r == 0) {
-            point(x, y);
+            drawPoint(x, y);
+		} else if(strokeWidth == 1 && r > 0 && r <= CircleTable.MAX_RADIUS) {
+            if(batch != null) {
+                batch.circle(x, y, CircleTable.get(r), fgRGB);
+            } else {
+                drawRaster.circle(x, y, CircleTable.get(r), fgRGB);
+            }
 		} else {
-            drawGraphics.drawOval(x - r, y - r, 2*r, 2*r);
+            foregroundGraphics().drawOval(x - r, y - r, 2*r, 2*r);
 		}
+		markDirty(x - Math.abs((long) r), y - Math.abs((long) r), x + Math.abs((long) r), y + Math.abs((long) r));
+	}
+	
+	/**
+	 * Implements the fillCircle command.
+	 */
+	public void fillCircle(int x, int y, int r) {
+        counters.fillCircles++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.circle(DisplayList.FILL_CIRCLE, x, y, r);
+        } else {
+            synchronized(publishLock) {
+                drawFillCircle(x, y, r);
+            }
+        }
+	}
+	
+	/**
+	 * Draws a filled circle, for fillCircle().
+	 */
+	void drawFillCircle(int x, int y, int r) {
+		if(r == 0) {
+            if(batch != null) {
+                batch.point(x, y, fgRGB);
+            } else {
+                drawRaster.point(x, y, fgRGB);
+            }
+		} else if(r > 0 && r <= CircleTable.MAX_RADIUS) {
+            if(batch != null) {
+                batch.fillCircle(x, y, CircleTable.get(r), fgRGB);
+            } else {
+                drawRaster.fillCircle(x, y, CircleTable.get(r), fgRGB);
+            }
+		} else {
+            foregroundGraphics().fillOval(x - r, y - r, 2*r + 1, 2*r + 1);
+		}
+		markDirty(x - Math.abs((long) r), y - Math.abs((long) r), x + Math.abs((long) r), y + Math.abs((long) r));
+	}
+	
+	/**
+	 * Implements the fillRect command.
+	 */
+	public void fillRect(int x, int y, int width, int height) {
+        counters.fillRects++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.fillRect(x, y, width, height);
+        } else {
+            synchronized(publishLock) {
+                drawFillRect(x, y, width, height);
+            }
+        }
+	}
+	
+	/**
+	 * Draws a filled rectangle, for fillRect().
+	 * Each row is one Arrays.fill into the drawBuffer.
+	 */
+	void drawFillRect(int x, int y, int width, int height) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        if(batch != null) {
+            batch.fillRect(x, y, width, height, fgRGB);
+        } else {
+            drawRaster.fillRect(x, y, width, height, fgRGB);
+        }
+        // the outline thickness does not apply to fills
+        markDrawn(x, y, lastCorner(x, width), lastCorner(y, height));
+	}
+	
+	/**
+	 * Implements the fillPolygon command.
+	 * Each row is filled in spans with Arrays.fill into the drawBuffer.
+	 */
+	public void fillPolygon(int[] xs, int[] ys, int count) {
+        // the arrays may change once this returns, so they are not recorded
+        finish();
+        counters.fillPolygons++;
+        if(count < 3) {
+            return;
+        }
+        synchronized(publishLock) {
+            drawRaster.fillPolygon(xs, ys, count, fgRGB);
+            int minX = xs[0];
+            int minY = ys[0];
+            int maxX = minX;
+            int maxY = minY;
+            for(int i = 1; i < count; i++) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+            }
+            markDrawn(minX, minY, lastCorner(maxX, 0), lastCorner(maxY, 0));
+        }
+	}
+	
+	/**
+	 * Returns start + length - 1, kept small enough that the DirtyRegion
+	 * can add 1 to it.
+	 */
+	private static int lastCorner(int start, int length) {
+        return (int) Math.min((long) start + length - 1, Integer.MAX_VALUE - 1);
 	}
 	
 	/**
 	 * Implements the text command.
+	 * Text made of printable ASCII characters is copied from the glyph 
+	 * atlas directly into the drawBuffer.
 	 */
 	public void text(int x, int y, String s) {
-        drawGraphics.drawString(s, x, y + charAscent);
+        counters.texts++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.text(x, y, s);
+        } else {
+            synchronized(publishLock) {
+                drawText(x, y, s);
+            }
+        }
+	}
+	
+	/**
+	 * Draws text, for text().
+	 */
+	void drawText(int x, int y, String s) {
+        if(glyphs.containsAll(s)) {
+            rasterizeBatch();
+            drawRaster.text(glyphs, x, y, s, 0, s.length(), fgRGB);
+        } else {
+            foregroundGraphics().drawString(s, x, y + charAscent);
+        }
+        markDirty(x, y, x + (long) charWidth*s.length(), (long) y + charHeight);
 	}
     
+    /**
+     * Implements the loadSprite command.
+     * The image is converted to a Sprite once and cached, loading the same
+     * file with the same color key again returns the same id.
+     * 
+     * @param colorKey the packed RGB color that is transparent, or 
+     * Sprite.NO_COLOR_KEY
+     * @return the id of the sprite
+     * @throws IOException if the file cannot be read as an image
+     */
+    public int loadSprite(String filename, int colorKey) throws IOException {
+        finish();
+        String key = colorKey + ":" + new File(filename).getAbsolutePath();
+        Integer id = spriteIds.get(key);
+        if(id == null) {
+            BufferedImage img = ImageIO.read(new File(filename));
+            if(img == null) {
+                throw new IOException(filename + " is not an image");
+            }
+            id = sprites.size();
+            sprites.add(new Sprite(img, colorKey));
+            spriteIds.put(key, id);
+        }
+        return id;
+    }
+    
+    /**
+     * Returns true if id is the id of a loaded sprite.
+     */
+    public boolean isSprite(int id) {
+        return id >= 0 && id < sprites.size();
+    }
+    
+    /**
+     * Implements the sprite command.
+     * 
+     * @param id must be the id of a loaded sprite
+     */
+    public void sprite(int id, int x, int y) {
+        counters.sprites++;
+        DisplayList d = displayList;
+        if(d != null) {
+            d.sprite(id, x, y);
+        } else {
+            synchronized(publishLock) {
+                drawSprite(id, x, y);
+            }
+        }
+    }
+    
+    /**
+     * Draws a sprite, for sprite().
+     * The rows are copied straight into the drawBuffer.
+     */
+    void drawSprite(int id, int x, int y) {
+        Sprite s = sprites.get(id);
+        rasterizeBatch();
+        drawRaster.sprite(s, x, y);
+        markDirty(x, y, (long) x + s.width - 1, (long) y + s.height - 1);
+    }
+    
     /**
      * Implments the zoom command.
      * @param factor must be greater than 0
      */
     public void zoom(int factor) {
-        if(zoomFactor > 0) {
-            zoomFactor = factor;
+        if(factor > 0) {
+            finish();
+            synchronized(publishLock) {
+                zoomFactor = factor;
+            }
             setPreferredSize(new Dimension(zoomFactor*bufferWidth, zoomFactor*bufferHeight));
             invalidate();
+            dirty.addAll();
         }
     }
     
@@ -549,12 +1659,12 @@ final class Screen extends JComponent {
      * Saves the current view of the backbuffer to file.
      */
     public void save(String filename) {
-        updateBackBuffer();
-        Image output;
-        if(zoomFactor > 1) {
-            output = backBuffer.getScaledInstance(zoomFactor*bufferWidth, zoomFactor*bufferHeight, Image.SCALE_REPLICATE);
-        } else {
-            output = backBuffer;
+        BufferedImage output;
+        finish();
+        synchronized(publishLock) {
+            publish();
+            output = new BufferedImage(zoomFactor*bufferWidth, zoomFactor*bufferHeight, BufferedImage.TYPE_INT_RGB);
+            Rasterizer.zoom(backRaster, new Rasterizer(output), zoomFactor, new Rectangle(0, 0, bufferWidth, bufferHeight));
         }
         BMPEncoder.encode(filename, output);
     }
@@ -0,0 +1,198 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fills a rectangle of pixels from a PixelFunction on all processors.
+ * 
+ * The rectangle is split into bands of rows.  The calling thread and one
+ * helper thread per extra processor take bands until there are none left,
+ * so a band that is slow to compute does not hold up the others.  Each band
+ * is written straight into the pixel array, and no two threads write the
+ * same row.
+ * 
+ * @author Ronald Chen
+ */
+final class Shader implements Runnable {
+
+    /**
+     * The number of rows in a band.
+     */
+    private static final int BAND_HEIGHT = 8;
+
+    /**
+     * The helper threads shared by all shading, or null on a single 
+     * processor.
+     */
+    private static final ExecutorService pool;
+    
+    private static final int helpers;
+    
+    static {
+        helpers = Runtime.getRuntime().availableProcessors() - 1;
+        if(helpers > 0) {
+            pool = Executors.newFixedThreadPool(helpers, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "BasicJ shader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            pool = null;
+        }
+    }
+
+    private final int[] pixels;
+    
+    private final int stride;
+
+    private final PixelFunction f;
+
+    private final int x0, y0, x1, y1;
+
+    /**
+     * The number of bands.
+     */
+    private final int bands;
+
+    /**
+     * The next band to hand out.
+     */
+    private final AtomicInteger nextBand = new AtomicInteger();
+
+    /**
+     * The number of helpers still working.
+     * Only changed while holding the monitor.
+     */
+    private int working;
+
+    /**
+     * The first exception or error thrown by f, to be thrown again on the
+     * calling thread.
+     */
+    private Throwable failure;
+    
+    private Shader(Rasterizer target, PixelFunction f, int x0, int y0, int x1, int y1) {
+        pixels = target.getPixels();
+        stride = target.getWidth();
+        this.f = f;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+        bands = (y1 - y0 + BAND_HEIGHT - 1)/BAND_HEIGHT;
+    }
+
+    /**
+     * Sets every pixel of target in the rectangle at (x, y) of width w and
+     * height h, clipped to target, to the opaque color f.rgb(x, y).
+     * Returns once every pixel is written.  If f throws, the first exception
+     * or error is thrown again here, once the other threads have stopped.
+     */
+    public static void shade(Rasterizer target, PixelFunction f, int x, int y, int w, int h) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(target.getWidth(), x + w);
+        int y1 = Math.min(target.getHeight(), y + h);
+        if(x0 >= x1 || y0 >= y1) {
+            return;
+        }
+        Shader shader = new Shader(target, f, x0, y0, x1, y1);
+        shader.shadeAll(Math.min(helpers, shader.bands - 1));
+    }
+
+    /**
+     * Shades with n helper threads and the calling thread.
+     */
+    private void shadeAll(int n) {
+        synchronized(this) {
+            working = n;
+        }
+        for(int i = 0; i < n; i++) {
+            pool.execute(this);
+        }
+        shadeBands();
+        boolean interrupted = false;
+        synchronized(this) {
+            while(working > 0) {
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    // the helpers still write the pixels, so keep waiting
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if(failure instanceof Error) {
+            throw (Error) failure;
+        } else if(failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * A helper thread.
+     */
+    public void run() {
+        try {
+            shadeBands();
+        } finally {
+            synchronized(this) {
+                working--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Takes bands until there are none left and shades them.
+     */
+    private void shadeBands() {
+        try {
+            for(int band = nextBand.getAndIncrement(); band < bands; band = nextBand.getAndIncrement()) {
+                int y = y0 + BAND_HEIGHT*band;
+                int end = Math.min(y1, y + BAND_HEIGHT);
+                for(int row = y; row < end; row++) {
+                    int i = row*stride + x0;
+                    for(int x = x0; x < x1; x++) {
+                        pixels[i++] = 0xFF000000 | f.rgb(x, row);
+                    }
+                }
+            }
+        } catch(Throwable e) {
+            synchronized(this) {
+                if(failure == null) {
+                    failure = e;
+                }
+            }
+            // stop the other threads early
+            nextBand.set(bands);
+        }
+    }
+}
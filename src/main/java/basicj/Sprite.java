@@ -0,0 +1,102 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * An image converted once for fast drawing.
+ * 
+ * The pixels are stored as opaque ARGB, the format of the drawBuffer, with
+ * the transparent pixels already found.  Each row is kept as runs of opaque
+ * pixels, so drawing a row is one System.arraycopy per run, and an image
+ * without transparency is one arraycopy per row.
+ * 
+ * @see Rasterizer#sprite(Sprite, int, int)
+ * @author Ronald Chen
+ */
+final class Sprite {
+
+    /**
+     * Means the sprite has no color key.
+     */
+    static final int NO_COLOR_KEY = -1;
+
+    final int width;
+    
+    final int height;
+    
+    /**
+     * The pixels, row by row.
+     */
+    final int[] pixels;
+    
+    /**
+     * The runs of opaque pixels, as pairs of start column and length.
+     * The runs of row y are from runs[rowStart[y]] up to runs[rowStart[y + 1]].
+     */
+    final int[] runs;
+    
+    final int[] rowStart;
+    
+    /**
+     * Converts img.
+     * Pixels with the color colorKey, or that are less than half opaque,
+     * are transparent.
+     * 
+     * @param colorKey a packed RGB color, or NO_COLOR_KEY
+     */
+    public Sprite(BufferedImage img, int colorKey) {
+        width = img.getWidth();
+        height = img.getHeight();
+        pixels = img.getRGB(0, 0, width, height, null, 0, width);
+        rowStart = new int[height + 1];
+        int[] r = new int[2*height];
+        int n = 0;
+        for(int y = 0; y < height; y++) {
+            rowStart[y] = n;
+            int x = 0;
+            while(x < width) {
+                while(x < width && isTransparent(pixels[y*width + x], colorKey)) {
+                    x++;
+                }
+                int start = x;
+                while(x < width && !isTransparent(pixels[y*width + x], colorKey)) {
+                    pixels[y*width + x] |= 0xFF000000;
+                    x++;
+                }
+                if(x > start) {
+                    if(n + 2 > r.length) {
+                        int[] newRuns = new int[2*r.length];
+                        System.arraycopy(r, 0, newRuns, 0, n);
+                        r = newRuns;
+                    }
+                    r[n++] = start;
+                    r[n++] = x - start;
+                }
+            }
+        }
+        rowStart[height] = n;
+        runs = new int[n];
+        System.arraycopy(r, 0, runs, 0, n);
+    }
+    
+    private static boolean isTransparent(int argb, int colorKey) {
+        return (argb >>> 24) < 0x80 || (colorKey != NO_COLOR_KEY && (argb & 0xFFFFFF) == colorKey);
+    }
+}
@@ -0,0 +1,337 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rasterizes a batch of primitives on several threads.
+ *
+ * The target is split into fixed square tiles.  Primitives are only
+ * recorded, and binned into every tile their bounds touch.  rasterize()
+ * then hands out the tiles to the threads, and each thread draws the
+ * primitives of a tile in the order they were recorded, clipped to the
+ * tile.  No two threads ever write the same pixel, so the pixels need no
+ * locking, and the result is exactly what a single Rasterizer would have
+ * drawn.
+ *
+ * Only one thread may record and call rasterize().
+ *
+ * @author Ronald Chen
+ */
+final class TiledRasterizer {
+
+    private static final int POINT = 0;
+    private static final int LINE = 1;
+    private static final int CIRCLE = 2;
+    private static final int FILL_CIRCLE = 3;
+    private static final int FILL_RECT = 4;
+
+    /**
+     * The width and height of a tile.
+     */
+    static final int TILE_SIZE = 128;
+
+    /**
+     * The number of ints in a record, opcode, 4 operands and the color.
+     */
+    private static final int RECORD_SIZE = 6;
+
+    /**
+     * Batches with fewer primitives are rasterized on the recording thread
+     * alone, since handing them out would cost more than it saves.
+     */
+    private static final int MIN_PARALLEL = 64;
+
+    /**
+     * The recorded primitives.
+     */
+    private int[] records = new int[RECORD_SIZE*1024];
+
+    /**
+     * The circle table of each circle record, by record number.
+     */
+    private CircleTable[] tables = new CircleTable[1024];
+
+    /**
+     * The number of recorded primitives.
+     */
+    private int count;
+
+    /**
+     * The record numbers binned into each tile.
+     */
+    private int[][] bins = new int[0][];
+
+    /**
+     * The number of record numbers in each bin.
+     */
+    private int[] binCounts = new int[0];
+
+    private int tilesX;
+
+    private int tilesY;
+
+    private Rasterizer target;
+
+    /**
+     * One Rasterizer on the target per thread, the last one is for the
+     * recording thread.
+     */
+    private final Rasterizer[] rasters;
+
+    /**
+     * The helper threads, or null if there is only one thread.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The helper tasks, one per helper thread.
+     */
+    private final Runnable[] helpers;
+
+    /**
+     * The next tile to hand out.
+     */
+    private final AtomicInteger nextTile = new AtomicInteger();
+
+    /**
+     * The number of helpers still working.
+     * Only changed while holding the monitor.
+     */
+    private int working;
+
+    /**
+     * Creates a TiledRasterizer that uses threads threads, including the
+     * thread that calls rasterize().
+     */
+    public TiledRasterizer(int threads) {
+        threads = Math.max(1, threads);
+        rasters = new Rasterizer[threads];
+        helpers = new Runnable[threads - 1];
+        for(int i = 0; i < helpers.length; i++) {
+            final int id = i;
+            helpers[i] = new Runnable() {
+                public void run() {
+                    try {
+                        rasterizeTiles(rasters[id]);
+                    } finally {
+                        synchronized(TiledRasterizer.this) {
+                            working--;
+                            TiledRasterizer.this.notifyAll();
+                        }
+                    }
+                }
+            };
+        }
+        if(helpers.length > 0) {
+            pool = Executors.newFixedThreadPool(helpers.length, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "BasicJ tile rasterizer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            pool = null;
+        }
+    }
+
+    /**
+     * Stops the helper threads.
+     */
+    public void shutdown() {
+        if(pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Starts recording primitives for target.
+     * Anything not yet rasterized is lost.
+     */
+    public void begin(Rasterizer target) {
+        if(this.target == null || this.target.getPixels() != target.getPixels()) {
+            for(int i = 0; i < rasters.length; i++) {
+                rasters[i] = new Rasterizer(target.getPixels(), target.getWidth(), target.getHeight(), target.hasAlpha());
+            }
+            tilesX = (target.getWidth() + TILE_SIZE - 1)/TILE_SIZE;
+            tilesY = (target.getHeight() + TILE_SIZE - 1)/TILE_SIZE;
+            if(bins.length < tilesX*tilesY) {
+                bins = new int[tilesX*tilesY][];
+                binCounts = new int[tilesX*tilesY];
+                for(int i = 0; i < bins.length; i++) {
+                    bins[i] = new int[64];
+                }
+            }
+        }
+        this.target = target;
+        clear();
+    }
+
+    /**
+     * Forgets all recorded primitives.
+     */
+    private void clear() {
+        for(int i = 0; i < tilesX*tilesY; i++) {
+            binCounts[i] = 0;
+        }
+        count = 0;
+    }
+
+    public void point(int x, int y, int argb) {
+        record(POINT, x, y, 0, 0, argb, null, x, y, x, y);
+    }
+
+    public void line(int x0, int y0, int x1, int y1, int argb) {
+        record(LINE, x0, y0, x1, y1, argb, null, Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+    }
+
+    public void circle(int cx, int cy, CircleTable t, int argb) {
+        record(CIRCLE, cx, cy, 0, 0, argb, t, cx - t.radius, cy - t.radius, cx + t.radius, cy + t.radius);
+    }
+
+    public void fillCircle(int cx, int cy, CircleTable t, int argb) {
+        record(FILL_CIRCLE, cx, cy, 0, 0, argb, t, cx - t.radius, cy - t.radius, cx + t.radius, cy + t.radius);
+    }
+
+    public void fillRect(int x, int y, int width, int height, int argb) {
+        if(width <= 0 || height <= 0) {
+            return;
+        }
+        record(FILL_RECT, x, y, width, height, argb, null, x, y, (int) Math.min((long) x + width - 1, Integer.MAX_VALUE), (int) Math.min((long) y + height - 1, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Records a primitive and bins it into every tile touched by the
+     * bounds (minX, minY) to (maxX, maxY), inclusive.
+     */
+    private void record(int op, int a, int b, int c, int d, int argb, CircleTable t, int minX, int minY, int maxX, int maxY) {
+        int w = target.getWidth();
+        int h = target.getHeight();
+        if(maxX < 0 || maxY < 0 || minX >= w || minY >= h) {
+            return;
+        }
+        if(RECORD_SIZE*(count + 1) > records.length) {
+            int[] newRecords = new int[2*records.length];
+            System.arraycopy(records, 0, newRecords, 0, records.length);
+            records = newRecords;
+            CircleTable[] newTables = new CircleTable[2*tables.length];
+            System.arraycopy(tables, 0, newTables, 0, tables.length);
+            tables = newTables;
+        }
+        int i = RECORD_SIZE*count;
+        records[i] = op;
+        records[i + 1] = a;
+        records[i + 2] = b;
+        records[i + 3] = c;
+        records[i + 4] = d;
+        records[i + 5] = argb;
+        tables[count] = t;
+
+        int tx0 = Math.max(0, minX)/TILE_SIZE;
+        int ty0 = Math.max(0, minY)/TILE_SIZE;
+        int tx1 = Math.min(w - 1, maxX)/TILE_SIZE;
+        int ty1 = Math.min(h - 1, maxY)/TILE_SIZE;
+        for(int ty = ty0; ty <= ty1; ty++) {
+            for(int tx = tx0; tx <= tx1; tx++) {
+                int tile = ty*tilesX + tx;
+                int n = binCounts[tile];
+                if(n == bins[tile].length) {
+                    int[] newBin = new int[2*n];
+                    System.arraycopy(bins[tile], 0, newBin, 0, n);
+                    bins[tile] = newBin;
+                }
+                bins[tile][n] = count;
+                binCounts[tile] = n + 1;
+            }
+        }
+        count++;
+    }
+
+    /**
+     * Rasterizes every recorded primitive into the target and forgets them.
+     * Returns once all of the pixels are written.
+     */
+    public void rasterize() {
+        if(count == 0) {
+            return;
+        }
+        nextTile.set(0);
+        int helping = (count < MIN_PARALLEL)?0:Math.min(helpers.length, tilesX*tilesY - 1);
+        synchronized(this) {
+            working = helping;
+        }
+        for(int i = 0; i < helping; i++) {
+            pool.execute(helpers[i]);
+        }
+        rasterizeTiles(rasters[rasters.length - 1]);
+        synchronized(this) {
+            while(working > 0) {
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                }
+            }
+        }
+        for(int i = 0; i < count; i++) {
+            tables[i] = null;
+        }
+        clear();
+    }
+
+    /**
+     * Takes tiles until there are none left and rasterizes them with r.
+     */
+    private void rasterizeTiles(Rasterizer r) {
+        final int[] rec = records;
+        final int tiles = tilesX*tilesY;
+        for(int tile = nextTile.getAndIncrement(); tile < tiles; tile = nextTile.getAndIncrement()) {
+            int n = binCounts[tile];
+            if(n == 0) {
+                continue;
+            }
+            r.setClip((tile%tilesX)*TILE_SIZE, (tile/tilesX)*TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            int[] bin = bins[tile];
+            for(int j = 0; j < n; j++) {
+                int k = bin[j];
+                int i = RECORD_SIZE*k;
+                switch(rec[i]) {
+                case POINT:
+                    r.point(rec[i + 1], rec[i + 2], rec[i + 5]);
+                    break;
+                case LINE:
+                    r.line(rec[i + 1], rec[i + 2], rec[i + 3], rec[i + 4], rec[i + 5]);
+                    break;
+                case CIRCLE:
+                    r.circle(rec[i + 1], rec[i + 2], tables[k], rec[i + 5]);
+                    break;
+                case FILL_CIRCLE:
+                    r.fillCircle(rec[i + 1], rec[i + 2], tables[k], rec[i + 5]);
+                    break;
+                case FILL_RECT:
+                    r.fillRect(rec[i + 1], rec[i + 2], rec[i + 3], rec[i + 4], rec[i + 5]);
+                    break;
+                }
+            }
+        }
+    }
+}
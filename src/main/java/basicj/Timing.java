@@ -0,0 +1,110 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.io.Serializable;
+
+/**
+ * A snapshot of how long an operation took over all the times it was done.
+ * 
+ * @see RenderStats
+ * @author Ronald Chen
+ */
+public final class Timing implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of buckets.
+     */
+    static final int BUCKETS = 64;
+
+    private final long count;
+    
+    private final long totalNanos;
+    
+    private final long maxNanos;
+    
+    private final long[] buckets;
+    
+    Timing(long count, long totalNanos, long maxNanos, long[] buckets) {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.buckets = buckets;
+    }
+    
+    /**
+     * Returns the number of times the operation was done.
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the total time spent, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+    
+    /**
+     * Returns the mean time, in nanoseconds, or 0 if it was never done.
+     */
+    public long getMeanNanos() {
+        return (count == 0)?0:totalNanos/count;
+    }
+    
+    /**
+     * Returns the longest time, in nanoseconds.
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+    
+    /**
+     * Returns the histogram.
+     * Element i is the number of times that took from 2^i up to 2^(i+1)
+     * nanoseconds.
+     */
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+    
+    /**
+     * Returns a time that the fraction p of all times were under, rounded
+     * up to a power of 2 nanoseconds.
+     * 
+     * @param p between 0 and 1, eg. 0.99 for the 99th percentile
+     */
+    public long percentileNanos(double p) {
+        long target = (long) Math.ceil(p*count);
+        long seen = 0;
+        for(int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if(seen >= target && seen > 0) {
+                return Math.min(maxNanos, (i == 63)?Long.MAX_VALUE:(1L << (i + 1)));
+            }
+        }
+        return 0;
+    }
+    
+    public String toString() {
+        return count + " times, mean " + getMeanNanos()/1000 + "us, 99% under " + percentileNanos(0.99)/1000 + "us, max " + maxNanos/1000 + "us";
+    }
+}
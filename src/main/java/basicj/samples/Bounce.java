@@ -0,0 +1,44 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package basicj.samples;
+
+import basicj.BasicJ;
+
+/**
+ * Bounce
+ * Bounces a ball around the screen at 60 frames a second with nextFrame, 
+ * and prints how many frames were not ready in time.
+ * 
+ * @author Ronald Chen
+ */
+public class Bounce extends BasicJ {
+
+    public Bounce() {
+        int x = 100;
+        int y = 100;
+        int dx = 3;
+        int dy = 2;
+        
+        for(int frame = 0; frame < 600; frame++) {
+            clear();
+            color(yellow);
+            fillCircle(x, y, 20);
+            nextFrame(60);
+            
+            x += dx;
+            y += dy;
+            if(x < 20 || x > width() - 20) {
+                dx = -dx;
+            }
+            if(y < 20 || y > height() - 20) {
+                dy = -dy;
+            }
+        }
+        println("missed frames: " + missedFrames());
+    }
+    
+    public static void main(String[] args) {
+        new Bounce();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package basicj.samples;
+
+import basicj.BasicJ;
+
+/**
+ * BulkPointArt
+ * Draws the same random points twice, once with a color and point command
+ * per pixel and once with a single points command, and prints how long each
+ * took.
+ * 
+ * @author Ronald Chen
+ */
+public class BulkPointArt extends BasicJ {
+
+	public BulkPointArt() {
+		int n = 1000000;
+		int w = width();
+		int h = height();
+		
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		int[] rgb = new int[n];
+		for(int i = 0; i < n; i++) {
+			xs[i] = (int) (Math.random()*w);
+			ys[i] = (int) (Math.random()*h);
+			rgb[i] = rgb(255*xs[i]/w, 255*ys[i]/h, 128);
+		}
+		
+		long start, end;
+		start = System.currentTimeMillis();
+		for(int i = 0; i < n; i++) {
+			color(255*xs[i]/w, 255*ys[i]/h, 128);
+			point(xs[i], ys[i]);
+		}
+		end = System.currentTimeMillis();
+		System.out.println("color and point: " + (double) (end - start)/1000);
+		
+		clear();
+		start = System.currentTimeMillis();
+		points(xs, ys, rgb, n);
+		end = System.currentTimeMillis();
+		System.out.println("points:          " + (double) (end - start)/1000);
+	}
+	
+	public static void main(String[] args) {
+		new BulkPointArt();
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package basicj.samples;
+
+import basicj.BasicJ;
+
+/**
+ * CircleBenchmark
+ * Repeats the ZoomCircleArt drawing and prints the time of each pass.  The
+ * first pass computes the circle, the later passes reuse it.  The last pass 
+ * uses thickness 2 to show the cost of the Java2D circle.
+ * 
+ * @author Ronald Chen
+ */
+public class CircleBenchmark extends BasicJ {
+	
+	public CircleBenchmark() {
+        zoom(2);
+		int n = 150;
+		int passes = 10;
+		
+		for(int pass = 0; pass <= passes; pass++) {
+			if(pass == passes) {
+				thickness(2);
+			}
+			clear();
+			System.out.println("pass " + pass + ": " + draw(n));
+		}
+	}
+	
+	/**
+	 * Draws the ZoomCircleArt circles and returns the time taken in seconds.
+	 */
+	private double draw(int n) {
+		double d = 120;
+		
+		double frac;
+		double theta;
+		
+		long start, end;
+		start = System.currentTimeMillis();
+		for(int i = 0; i < n; i++) {
+			frac = (double) i/n;
+			theta = frac*(2*Math.PI);
+			circle((int) (d*Math.sin(theta)) + width()/2, (int) (d*Math.cos(theta)) + height()/2, (int) d);
+		}
+		end = System.currentTimeMillis();
+		return (double) (end - start)/1000;
+	}
+	
+	public static void main(String[] args) {
+		new CircleBenchmark();
+	}
+}
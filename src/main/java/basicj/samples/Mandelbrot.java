@@ -0,0 +1,45 @@
+/*
+ * Created on Oct 18, 2026
+ */
+package basicj.samples;
+
+import basicj.BasicJ;
+import basicj.PixelFunction;
+
+/**
+ * Mandelbrot
+ * Shades the Mandelbrot set with one shade command and prints how long it
+ * took.
+ * 
+ * @author Ronald Chen
+ */
+public class Mandelbrot extends BasicJ {
+
+    public Mandelbrot() {
+        screen(600, 400);
+        
+        long start = System.currentTimeMillis();
+        shade(new PixelFunction() {
+            public int rgb(int x, int y) {
+                double cr = -2.2 + 3.3*x/600;
+                double ci = -1.1 + 2.2*y/400;
+                double zr = 0;
+                double zi = 0;
+                int i = 0;
+                while(i < 255 && zr*zr + zi*zi < 4) {
+                    double t = zr*zr - zi*zi + cr;
+                    zi = 2*zr*zi + ci;
+                    zr = t;
+                    i++;
+                }
+                return BasicJ.rgb(i, i/2, 255 - i);
+            }
+        });
+        long end = System.currentTimeMillis();
+        println("shade: " + (double) (end - start)/1000);
+    }
+    
+    public static void main(String[] args) {
+        new Mandelbrot();
+    }
+}
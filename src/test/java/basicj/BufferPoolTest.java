@@ -0,0 +1,58 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * BufferPoolTest
+ *
+ * @author Ronald Chen
+ */
+public class BufferPoolTest extends TestCase {
+
+    public void testReuse() {
+        BufferPool pool = new BufferPool();
+        BufferedImage a = pool.get(10, 20, BufferedImage.TYPE_INT_RGB);
+        BufferedImage b = pool.get(10, 20, BufferedImage.TYPE_INT_ARGB);
+        pool.put(a);
+        pool.put(b);
+        assertEquals(2, pool.size());
+        assertSame(b, pool.get(10, 20, BufferedImage.TYPE_INT_ARGB));
+        assertNotSame(a, pool.get(20, 10, BufferedImage.TYPE_INT_RGB));
+        assertSame(a, pool.get(10, 20, BufferedImage.TYPE_INT_RGB));
+        assertEquals(0, pool.size());
+        pool.put(null);
+        assertEquals(0, pool.size());
+    }
+
+    public void testBounded() {
+        BufferPool pool = new BufferPool();
+        BufferedImage first = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        pool.put(first);
+        for(int i = 0; i < BufferPool.CAPACITY; i++) {
+            pool.put(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        assertEquals(BufferPool.CAPACITY, pool.size());
+        for(int i = 0; i < BufferPool.CAPACITY; i++) {
+            assertNotSame(first, pool.get(1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * DirtyRegionTest
+ * 
+ * @author Ronald Chen
+ */
+public class DirtyRegionTest extends TestCase {
+
+    public void testEmpty() {
+        DirtyRegion d = new DirtyRegion(100, 100);
+        assertNull(d.peek());
+        assertNull(d.take());
+    }
+    
+    public void testUnion() {
+        DirtyRegion d = new DirtyRegion(100, 100);
+        d.add(10, 20, 10, 20);
+        d.add(30, 5, 40, 6);
+        assertEquals(new Rectangle(10, 5, 31, 16), d.peek());
+        assertEquals(new Rectangle(10, 5, 31, 16), d.take());
+    }
+    
+    public void testClipped() {
+        DirtyRegion d = new DirtyRegion(100, 100);
+        d.add(-10, 90, 200, 300);
+        assertEquals(new Rectangle(0, 90, 100, 10), d.take());
+        d.add(200, 200, 300, 300);
+        assertNull(d.take());
+    }
+    
+    public void testConcurrentAdd() throws InterruptedException {
+        final DirtyRegion d = new DirtyRegion(1000, 1000);
+        Thread drawer = new Thread() {
+            public void run() {
+                for(int i = 0; i < 1000; i++) {
+                    d.add(i, i, i, i);
+                }
+            }
+        };
+        drawer.start();
+        boolean[] seen = new boolean[1000];
+        Rectangle r = new Rectangle();
+        while(drawer.isAlive()) {
+            take(d, r, seen);
+        }
+        drawer.join();
+        take(d, r, seen);
+        for(int i = 0; i < 1000; i++) {
+            assertTrue("pixel " + i, seen[i]);
+        }
+    }
+    
+    /**
+     * Takes the region and marks the diagonal pixels it contains in seen.
+     */
+    private static void take(DirtyRegion d, Rectangle r, boolean[] seen) {
+        if(d.take(r)) {
+            for(int i = r.x; i < r.x + r.width; i++) {
+                if(r.contains(i, i)) {
+                    seen[i] = true;
+                }
+            }
+        }
+    }
+    
+    public void testHuge() {
+        DirtyRegion d = new DirtyRegion(100, 100);
+        d.add(0, 10, Integer.MAX_VALUE, 10);
+        assertEquals(new Rectangle(0, 10, 100, 1), d.take());
+        d.add(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(new Rectangle(0, 0, 100, 100), d.take());
+    }
+    
+    public void testHugeLine() {
+        Screen scr = new Screen();
+        scr.line(0, 10, Integer.MAX_VALUE, 10);
+        scr.circle(5, 20, Integer.MAX_VALUE);
+        scr.flush();
+        BufferedImage image = new BufferedImage(10, 30, BufferedImage.TYPE_INT_RGB);
+        scr.paint(image.getGraphics());
+        assertEquals(0xFFFFFF, image.getRGB(5, 10) & 0xFFFFFF);
+    }
+    
+    public void testTake() {
+        DirtyRegion d = new DirtyRegion(100, 100);
+        d.add(1, 1, 1, 1);
+        assertEquals(new Rectangle(1, 1, 1, 1), d.take());
+        d.add(2, 2, 2, 2);
+        assertEquals(new Rectangle(2, 2, 1, 1), d.take());
+        assertNull(d.take());
+        d.addAll();
+        assertEquals(new Rectangle(0, 0, 100, 100), d.take());
+    }
+}
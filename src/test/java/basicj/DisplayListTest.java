@@ -0,0 +1,180 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * DisplayListTest
+ *
+ * @author Ronald Chen
+ */
+public class DisplayListTest extends TestCase {
+
+    private File immediateFile;
+
+    private File recordedFile;
+
+    public void setUp() throws IOException {
+        immediateFile = File.createTempFile("immediate", ".bmp");
+        recordedFile = File.createTempFile("recorded", ".bmp");
+    }
+
+    public void tearDown() {
+        immediateFile.delete();
+        recordedFile.delete();
+    }
+
+    /**
+     * Draws enough commands to fill the ring several times.
+     */
+    private void draw(Screen scr) {
+        Random r = new Random(7);
+        for(int i = 0; i < 100000; i++) {
+            scr.color(r.nextInt(0x1000000));
+            switch(r.nextInt(9)) {
+            case 0:
+                scr.point(r.nextInt(500), r.nextInt(500));
+                break;
+            case 1:
+                scr.line(r.nextInt(500), r.nextInt(500), r.nextInt(500), r.nextInt(500));
+                break;
+            case 2:
+                scr.circle(r.nextInt(500), r.nextInt(500), r.nextInt(50));
+                break;
+            case 3:
+                scr.fillCircle(r.nextInt(500), r.nextInt(500), r.nextInt(10));
+                break;
+            case 4:
+                scr.text(r.nextInt(500), r.nextInt(500), "text " + i);
+                break;
+            case 5:
+                scr.thickness(1 + r.nextInt(2));
+                break;
+            case 6:
+                scr.fillRect(r.nextInt(500), r.nextInt(500), r.nextInt(20), r.nextInt(20));
+                break;
+            case 7:
+                scr.layer(r.nextInt(3));
+                break;
+            case 8:
+                if(r.nextInt(100) == 0) {
+                    scr.clearLayer(r.nextInt(3));
+                }
+                break;
+            }
+            if(i%1000 == 0) {
+                scr.print("line " + i + "\n");
+                scr.backspace('\n');
+                scr.print("!\n");
+            }
+            if(i%10000 == 0) {
+                scr.flush();
+            }
+        }
+    }
+
+    private byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while(n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    public void testSameImage() throws IOException {
+        Screen immediate = new Screen();
+        draw(immediate);
+        immediate.save(immediateFile.getPath());
+
+        Screen recorded = new Screen();
+        recorded.displayList(true);
+        draw(recorded);
+        recorded.save(recordedFile.getPath());
+        recorded.displayList(false);
+
+        assertTrue(immediateFile.length() > 0);
+        assertTrue(Arrays.equals(read(immediateFile), read(recordedFile)));
+    }
+
+    public void testTiled() throws IOException {
+        Screen immediate = new Screen();
+        immediate.screen(1000, 700);
+        draw(immediate);
+        immediate.save(immediateFile.getPath());
+
+        System.setProperty("basicj.renderThreads", "4");
+        try {
+            Screen recorded = new Screen();
+            recorded.screen(1000, 700);
+            recorded.displayList(true);
+            draw(recorded);
+            recorded.save(recordedFile.getPath());
+            recorded.displayList(false);
+        } finally {
+            System.clearProperty("basicj.renderThreads");
+        }
+
+        assertTrue(Arrays.equals(read(immediateFile), read(recordedFile)));
+    }
+
+    public void testStop() {
+        Screen scr = new Screen();
+        scr.displayList(true);
+        for(int i = 0; i < 1000; i++) {
+            scr.line(0, i, 499, i);
+        }
+        scr.displayList(false);
+        scr.point(1, 1);
+        scr.flush();
+        assertTrue(scr.getPublishedFrames() > 0);
+    }
+
+    public void testPrintRecorded() throws InterruptedException {
+        final Screen scr = new Screen();
+        scr.displayList(true);
+        Thread printer = new Thread() {
+            public void run() {
+                scr.print("hello\n");
+                scr.backspace('\n');
+            }
+        };
+        synchronized(scr.publishLock) {
+            // the render thread cannot draw the line while the lock is held,
+            // so print must not wait for it
+            scr.line(0, 0, 10, 10);
+            printer.start();
+            printer.join(5000);
+            assertFalse(printer.isAlive());
+        }
+        scr.displayList(false);
+        assertEquals(1, scr.stats().getPrints());
+    }
+}
@@ -0,0 +1,138 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import junit.framework.TestCase;
+
+/**
+ * FlushSchedulerTest
+ *
+ * @author Ronald Chen
+ */
+public class FlushSchedulerTest extends TestCase {
+
+    private Screen scr;
+
+    private FlushScheduler flusher;
+
+    public void setUp() {
+        scr = new Screen();
+        scr.flush();
+        flusher = new FlushScheduler(scr);
+    }
+
+    public void tearDown() {
+        flusher.setRate(0);
+    }
+
+    private static int countFlushThreads() {
+        Thread[] threads = new Thread[Thread.activeCount() + 10];
+        int n = Thread.enumerate(threads);
+        int count = 0;
+        for(int i = 0; i < n; i++) {
+            if(threads[i].getName().equals("BasicJ flush")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void testSynchronous() throws InterruptedException {
+        for(int i = 0; i < 10; i++) {
+            // the first flush in a frame publishes at once
+            Thread.sleep(20);
+            long before = scr.getPublishedFrames();
+            scr.point(i, i);
+            flusher.flush();
+            assertEquals(before + 1, scr.getPublishedFrames());
+        }
+    }
+
+    public void testMergedFlushes() throws InterruptedException {
+        Thread.sleep(20);
+        long before = scr.getPublishedFrames();
+        long start = System.nanoTime();
+        for(int i = 0; i < 1000; i++) {
+            scr.point(i%100, i/100);
+            flusher.flush();
+        }
+        long ticks = (System.nanoTime() - start)/FlushScheduler.FRAME_NANOS;
+        Thread.sleep(100);
+        long frames = scr.getPublishedFrames() - before;
+        // one publish at once and one at the end of each frame
+        assertTrue("frames " + frames, frames >= 2);
+        assertTrue("frames " + frames + " in " + ticks + " ticks", frames <= ticks + 2);
+        BufferedImage image = new BufferedImage(100, 10, BufferedImage.TYPE_INT_RGB);
+        scr.paint(image.getGraphics());
+        assertEquals(0xFFFFFF, image.getRGB(99, 9) & 0xFFFFFF);
+    }
+
+    public void testMerged() throws InterruptedException {
+        flusher.setRate(50);
+        scr.point(1, 1);
+        flusher.flush();
+        long before = scr.getPublishedFrames();
+        scr.point(2, 2);
+        // an auto flush right after an explicit one is skipped
+        flusher.run();
+        assertEquals(before, scr.getPublishedFrames());
+        Thread.sleep(200);
+        assertEquals(before + 1, scr.getPublishedFrames());
+    }
+
+    public void testNeverHalfDrawn() throws InterruptedException {
+        Thread drawer = new Thread() {
+            public void run() {
+                for(int i = 0; i < 1000; i++) {
+                    scr.color(0x010101*(i%255 + 1));
+                    scr.fillRect(0, 0, 500, 500);
+                }
+            }
+        };
+        drawer.start();
+        BufferedImage image = new BufferedImage(500, 500, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        while(drawer.isAlive()) {
+            // flushing on another thread than the drawing one
+            flusher.flush();
+            scr.paint(image.getGraphics());
+            for(int i = 0; i < pixels.length; i++) {
+                assertEquals("pixel " + i, pixels[0], pixels[i]);
+            }
+        }
+        drawer.join();
+    }
+
+    public void testIdle() throws InterruptedException {
+        flusher.setRate(1);
+        Thread.sleep(20);
+        long before = scr.getPublishedFrames();
+        Thread.sleep(50);
+        assertEquals(before, scr.getPublishedFrames());
+    }
+
+    public void testOneThread() {
+        for(int i = 0; i < 20; i++) {
+            flusher.setRate(100 + i);
+        }
+        assertTrue(countFlushThreads() <= 1);
+    }
+}
@@ -0,0 +1,152 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * FrameTest
+ *
+ * @author Ronald Chen
+ */
+public class FrameTest extends TestCase {
+
+    /**
+     * A clock that only moves when it is parked or advanced.
+     * Parking while interrupted returns at once, like LockSupport.parkNanos.
+     */
+    private static final class TestClock implements Clock {
+
+        long now = 1000000000L;
+
+        int parks;
+
+        public long nanoTime() {
+            return now;
+        }
+
+        public void park(long nanos) {
+            assertTrue("parked " + parks + " times", ++parks < 1000);
+            if(!Thread.currentThread().isInterrupted()) {
+                now += nanos;
+            }
+        }
+
+        void advance(long millis) {
+            now += 1000000L*millis;
+        }
+    }
+
+    private BasicJ b;
+
+    private TestClock clock;
+
+    public void setUp() {
+        System.setProperty("basicj.headless", "true");
+        b = new BasicJ();
+        clock = new TestClock();
+        b.setClock(clock);
+    }
+
+    public void tearDown() {
+        Thread.interrupted();
+        System.clearProperty("basicj.headless");
+    }
+
+    public void testPacing() {
+        b.nextFrame(100);
+        long start = clock.now;
+        long published = b.stats().getPublishedFrames();
+        for(int i = 0; i < 20; i++) {
+            b.point(i, i);
+            clock.advance(3);
+            b.nextFrame(100);
+        }
+        assertEquals(200000000L, clock.now - start);
+        assertEquals(0, b.missedFrames());
+        assertEquals(published + 20, b.stats().getPublishedFrames());
+    }
+
+    public void testMissed() {
+        b.nextFrame(100);
+        clock.advance(55);
+        b.nextFrame(100);
+        assertEquals(5, b.missedFrames());
+        // the next frame is back on schedule
+        long start = clock.now;
+        b.nextFrame(100);
+        assertEquals(5000000L, clock.now - start);
+        assertEquals(5, b.missedFrames());
+    }
+
+    public void testPause() {
+        long start = clock.now;
+        b.pause(30);
+        assertEquals(30000000L, clock.now - start);
+        b.pause(0);
+        b.pause(-1);
+        assertEquals(30000000L, clock.now - start);
+        // a huge pause does not overflow into no pause
+        b.pause(Long.MAX_VALUE/1000);
+        assertEquals(30000000L + 1000000L*(Long.MAX_VALUE/1000000L), clock.now - start);
+    }
+
+    public void testInterrupted() {
+        Thread.currentThread().interrupt();
+        b.pause(1000);
+        assertEquals(0, clock.parks);
+        // the interrupt only ended that pause
+        b.pause(30);
+        assertEquals(1, clock.parks);
+
+        b.nextFrame(100);
+        Thread.currentThread().interrupt();
+        long start = clock.now;
+        b.nextFrame(100);
+        assertEquals(start, clock.now);
+    }
+
+    public void testAwaitPainted() throws InterruptedException {
+        final Screen scr = new Screen();
+        scr.print("hello");
+        scr.flush();
+        long frame = scr.getPublishedFrames();
+        assertFalse(scr.awaitPainted(frame, 1000000));
+        Thread painter = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch(InterruptedException e) {
+                }
+                scr.paint(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics());
+            }
+        };
+        painter.start();
+        assertTrue(scr.awaitPainted(frame, 5000000000L));
+        assertTrue(scr.getPaintedFrame() >= frame);
+        painter.join();
+    }
+
+    public void testSystemClock() {
+        long start = System.nanoTime();
+        new BasicJ().pause(30);
+        assertTrue(System.nanoTime() - start >= 30000000L);
+    }
+}
@@ -0,0 +1,134 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+/**
+ * HeadlessTest
+ *
+ * @author Ronald Chen
+ */
+public class HeadlessTest extends TestCase {
+
+    private PrintStream out;
+
+    private InputStream in;
+
+    private ByteArrayOutputStream printed;
+
+    public void setUp() {
+        System.setProperty("basicj.headless", "true");
+        out = System.out;
+        in = System.in;
+        printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+    }
+
+    public void tearDown() {
+        System.setOut(out);
+        System.setIn(in);
+        System.clearProperty("basicj.headless");
+    }
+
+    public void testHeadless() throws IOException {
+        BasicJ b = new BasicJ("test");
+        assertNull(b.getFrame());
+        b.println("Hello, World!");
+        b.print(42);
+        assertEquals("Hello, World!\n42", printed.toString());
+
+        File file = File.createTempFile("headless", ".bmp");
+        try {
+            b.screen(40, 30);
+            b.line(0, 0, 39, 29);
+            b.save(file.getPath());
+            // 54 byte header and 40 pixel rows of 3 bytes
+            assertEquals(54 + 3*40*30, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testPrintStream() throws IOException {
+        BasicJ b = new BasicJ("test");
+        b.print(new StringReader("Hello,\n"));
+        b.print(new ByteArrayInputStream("World!\n".getBytes()));
+        File file = File.createTempFile("headless", ".txt");
+        try {
+            FileWriter w = new FileWriter(file);
+            for(int i = 0; i < 5000; i++) {
+                w.write(i + "\n");
+            }
+            w.close();
+            b.printFile(file.getPath());
+        } finally {
+            file.delete();
+        }
+        String s = printed.toString();
+        assertTrue(s.startsWith("Hello,\nWorld!\n0\n1\n"));
+        assertTrue(s.endsWith("4998\n4999\n"));
+
+        // long lines that wrap, split over several screenfuls and reads
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 3000; i++) {
+            text.append(i).append((i%7 == 0)?"\n":" ");
+        }
+        printed.reset();
+        b.print(new StringReader(text.toString()));
+        assertEquals(text.toString(), printed.toString());
+
+        // CRLF and CR line ends, with a CRLF split between two reads
+        text.setLength(0);
+        for(int i = 0; i < 8191; i++) {
+            text.append('y');
+        }
+        printed.reset();
+        b.print(new StringReader(text + "\r\na\r\nb\rc\r"));
+        assertEquals(text + "\na\nb\nc\n", printed.toString());
+
+        // at most one screenful a print, a 40 pixel screen has a few lines
+        b.screen(100, 40);
+        text.setLength(0);
+        for(int i = 0; i < 1000; i++) {
+            text.append("x\n");
+        }
+        long prints = b.stats().getPrints();
+        b.print(new StringReader(text.toString()));
+        assertTrue(b.stats().getPrints() - prints >= 1000/5);
+    }
+
+    public void testInput() {
+        System.setIn(new ByteArrayInputStream("x\nBob\n".getBytes()));
+        BasicJ b = new BasicJ();
+        assertEquals('x', b.keypressed());
+        assertEquals('\n', b.keypressed());
+        assertEquals("Bob", b.input("Name? "));
+        assertEquals("", b.input());
+        assertEquals(-1, b.keypressed());
+    }
+}
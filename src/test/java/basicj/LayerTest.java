@@ -0,0 +1,138 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * LayerTest
+ *
+ * @author Ronald Chen
+ */
+public class LayerTest extends TestCase {
+
+    private File cachedFile;
+
+    private File freshFile;
+
+    public void setUp() throws IOException {
+        cachedFile = File.createTempFile("cached", ".bmp");
+        freshFile = File.createTempFile("fresh", ".bmp");
+    }
+
+    public void tearDown() {
+        cachedFile.delete();
+        freshFile.delete();
+    }
+
+    private void background(Screen scr) {
+        scr.layer(0);
+        for(int i = 0; i < 50; i++) {
+            scr.color(i*0x050301);
+            scr.line(0, 10*i, 499, 499 - 10*i);
+        }
+        scr.fillRect(200, 200, 100, 50);
+    }
+
+    /**
+     * Draws frame i of a ball moving over the background.
+     */
+    private void frame(Screen scr, int i) {
+        scr.layer(1);
+        scr.clearLayer(1);
+        scr.color(0xFF0000);
+        scr.fillCircle(20 + 20*i, 220, 15);
+    }
+
+    private byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while(n < bytes.length) {
+                n += in.read(bytes, n, bytes.length - n);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private void assertSameImage(Screen cached, Screen fresh) throws IOException {
+        cached.save(cachedFile.getPath());
+        fresh.save(freshFile.getPath());
+        assertTrue(Arrays.equals(read(cachedFile), read(freshFile)));
+    }
+
+    public void testCached() throws IOException {
+        Screen cached = new Screen();
+        cached.print("hello\n");
+        background(cached);
+        for(int i = 0; i <= 2*Screen.CACHE_AFTER; i++) {
+            frame(cached, i);
+            cached.flush();
+        }
+        // the text and layer 0 are cached, layer 1 is not
+        assertEquals(2, cached.getCachedLevels());
+
+        Screen fresh = new Screen();
+        fresh.print("hello\n");
+        background(fresh);
+        frame(fresh, 2*Screen.CACHE_AFTER);
+        assertSameImage(cached, fresh);
+    }
+
+    public void testCachedLayerChanged() throws IOException {
+        Screen cached = new Screen();
+        background(cached);
+        for(int i = 0; i <= 2*Screen.CACHE_AFTER; i++) {
+            frame(cached, i);
+            cached.flush();
+        }
+        cached.layer(0);
+        cached.color(0x00FF00);
+        cached.line(0, 250, 499, 250);
+        cached.flush();
+        assertEquals(1, cached.getCachedLevels());
+
+        Screen fresh = new Screen();
+        background(fresh);
+        frame(fresh, 2*Screen.CACHE_AFTER);
+        fresh.layer(0);
+        fresh.color(0x00FF00);
+        fresh.line(0, 250, 499, 250);
+        assertSameImage(cached, fresh);
+    }
+
+    public void testClearLayer() throws IOException {
+        Screen cleared = new Screen();
+        background(cleared);
+        frame(cleared, 3);
+        cleared.flush();
+        cleared.clearLayer(1);
+
+        Screen fresh = new Screen();
+        background(fresh);
+        assertSameImage(cleared, fresh);
+    }
+}
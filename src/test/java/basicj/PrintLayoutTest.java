@@ -0,0 +1,133 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Color;
+
+import junit.framework.TestCase;
+
+/**
+ * PrintLayoutTest
+ * 
+ * @author Ronald Chen
+ */
+public class PrintLayoutTest extends TestCase {
+
+    private static void assertLines(PrintLayout layout, String... expected) {
+        assertEquals(expected.length, layout.lineCount());
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals("line " + i, expected[i], layout.line(i).toString());
+        }
+    }
+
+    public void testWrap() {
+        PrintLayout layout = new PrintLayout(5, 10);
+        assertEquals(0, layout.print(Color.RED.getRGB(), "abc"));
+        assertEquals(0, layout.print(Color.RED.getRGB(), "defgh"));
+        assertLines(layout, "abcde", "fgh");
+        assertEquals(1, layout.print(Color.BLUE.getRGB(), "ij\nk"));
+        assertLines(layout, "abcde", "fghij", "k");
+    }
+
+    public void testNewLines() {
+        PrintLayout layout = new PrintLayout(5, 10);
+        layout.print(Color.RED.getRGB(), "abcde\n\nf\n");
+        assertLines(layout, "abcde", "", "f", "");
+        assertTrue(layout.line(0).hardBreak);
+    }
+
+    public void testColorRuns() {
+        PrintLayout layout = new PrintLayout(10, 10);
+        layout.print(Color.RED.getRGB(), "ab");
+        layout.print(new Color(255, 0, 0).getRGB(), "c");
+        layout.print(Color.BLUE.getRGB(), "d");
+        assertEquals(2, layout.line(0).runCount);
+    }
+
+    public void testColorPerCharacter() {
+        PrintLayout layout = new PrintLayout(4, 10);
+        for(int i = 0; i < 6; i++) {
+            layout.print(0xFF000000 | i, String.valueOf((char) ('a' + i)));
+        }
+        assertLines(layout, "abcd", "ef");
+        PrintLayout.Line line = layout.line(0);
+        assertEquals(4, line.runCount);
+        for(int i = 0; i < 4; i++) {
+            assertEquals(i, line.runStart(i));
+            assertEquals(i + 1, line.runEnd(i));
+            assertEquals(0xFF000000 | i, line.runColor(i));
+        }
+        assertEquals(1, layout.backspace('f'));
+        assertEquals(1, layout.line(1).runCount);
+        layout.setSize(3, 10);
+        assertLines(layout, "abc", "de");
+        assertEquals(0xFF000004, layout.line(1).runColor(1));
+    }
+
+    public void testScroll() {
+        PrintLayout layout = new PrintLayout(5, 3);
+        layout.print(Color.RED.getRGB(), "1\n2\n3");
+        assertEquals(2, layout.print(Color.RED.getRGB(), "3"));
+        assertEquals(0, layout.print(Color.RED.getRGB(), "\n4"));
+        assertLines(layout, "2", "33", "4");
+        layout.print(Color.RED.getRGB(), "0123456789abcdefghij");
+        assertLines(layout, "9abcd", "efghi", "j");
+    }
+
+    public void testBounded() {
+        PrintLayout layout = new PrintLayout(10, 4);
+        for(int i = 0; i < 100000; i++) {
+            layout.print(new Color(i).getRGB(), String.valueOf((char) ('a' + i%26)));
+        }
+        assertEquals(4, layout.lineCount());
+        PrintLayout.Line top = layout.line(0);
+        layout.print(Color.RED.getRGB(), "\n");
+        assertSame(top, layout.line(3));
+    }
+
+    public void testBackspace() {
+        PrintLayout layout = new PrintLayout(3, 10);
+        layout.print(Color.RED.getRGB(), "abc_");
+        assertEquals(-1, layout.backspace('x'));
+        assertEquals(1, layout.backspace('_'));
+        assertLines(layout, "abc", "");
+        assertEquals(0, layout.backspace('c'));
+        assertLines(layout, "ab");
+        layout.print(Color.RED.getRGB(), "\n");
+        assertEquals(-1, layout.backspace('b'));
+        assertEquals(0, layout.backspace('\n'));
+        assertLines(layout, "ab");
+        layout.print(Color.RED.getRGB(), "c\nd");
+        assertLines(layout, "abc", "d");
+        assertEquals(-1, layout.backspace('\n'));
+        assertEquals(1, layout.backspace('d'));
+        assertEquals(0, layout.backspace('\n'));
+        assertEquals(-1, layout.backspace('\n'));
+        assertLines(layout, "abc");
+    }
+
+    public void testResize() {
+        PrintLayout layout = new PrintLayout(4, 10);
+        layout.print(Color.RED.getRGB(), "abcdefgh\nij");
+        assertLines(layout, "abcd", "efgh", "ij");
+        layout.setSize(3, 10);
+        assertLines(layout, "abc", "def", "gh", "ij");
+        layout.setSize(10, 1);
+        assertLines(layout, "ij");
+    }
+}
@@ -0,0 +1,303 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * RasterizerTest
+ *
+ * @author Ronald Chen
+ */
+public class RasterizerTest extends TestCase {
+
+    private static final int W = 64;
+    private static final int H = 48;
+
+    private Random r;
+
+    private BufferedImage expected;
+
+    private Graphics2D g;
+
+    private BufferedImage actual;
+
+    private Rasterizer raster;
+
+    public void setUp() {
+        r = new Random(42);
+        expected = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        g = (Graphics2D) expected.getGraphics();
+        actual = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        raster = new Rasterizer(actual);
+    }
+
+    private void assertSameImage() {
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                assertEquals("pixel (" + x + ", " + y + ")", expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    private int randomRGB() {
+        return 0xFF000000 | r.nextInt(0x1000000);
+    }
+
+    public void testPoint() {
+        for(int i = 0; i < 1000; i++) {
+            int rgb = randomRGB();
+            int x = r.nextInt(W + 20) - 10;
+            int y = r.nextInt(H + 20) - 10;
+            g.setColor(new Color(rgb));
+            g.drawLine(x, y, x, y);
+            raster.point(x, y, rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testPoints() {
+        int n = 1000;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        int[] rgb = new int[n];
+        for(int i = 0; i < n; i++) {
+            xs[i] = r.nextInt(W + 20) - 10;
+            ys[i] = r.nextInt(H + 20) - 10;
+            rgb[i] = randomRGB() & 0xFFFFFF;
+            g.setColor(new Color(rgb[i]));
+            g.drawLine(xs[i], ys[i], xs[i], ys[i]);
+        }
+        raster.points(xs, ys, rgb, n, 0);
+        assertSameImage();
+        
+        g.setColor(Color.RED);
+        for(int i = 0; i < n/2; i++) {
+            g.drawLine(xs[i], ys[i], xs[i], ys[i]);
+        }
+        raster.points(xs, ys, null, n/2, Color.RED.getRGB());
+        assertSameImage();
+    }
+
+    public void testLine() {
+        for(int i = 0; i < 500; i++) {
+            int rgb = randomRGB();
+            g.setColor(new Color(rgb));
+            int x0 = r.nextInt(W);
+            int y0 = r.nextInt(H);
+            int x1 = r.nextInt(W);
+            int y1 = r.nextInt(H);
+            g.drawLine(x0, y0, x1, y1);
+            raster.line(x0, y0, x1, y1, rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testClippedLine() {
+        for(int i = 0; i < 500; i++) {
+            int rgb = randomRGB();
+            g.setColor(new Color(rgb));
+            int x0 = r.nextInt(3*W) - W;
+            int y0 = r.nextInt(3*H) - H;
+            int x1 = r.nextInt(3*W) - W;
+            int y1 = r.nextInt(3*H) - H;
+            g.drawLine(x0, y0, x1, y1);
+            raster.line(x0, y0, x1, y1, rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testHugeLine() {
+        g.setColor(Color.WHITE);
+        g.drawLine(-1000000, 7, 1000000, 9);
+        raster.line(-1000000, 7, 1000000, 9, Color.WHITE.getRGB());
+        assertSameImage();
+    }
+
+    public void testCircle() {
+        int cx = W/2;
+        int cy = H/2;
+        for(int radius = 1; radius < H/2; radius++) {
+            actual = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+            new Rasterizer(actual).circle(cx, cy, CircleTable.get(radius), 0xFFFFFFFF);
+            for(int y = 0; y < H; y++) {
+                for(int x = 0; x < W; x++) {
+                    if(actual.getRGB(x, y) != 0) {
+                        double d = Math.sqrt((x - cx)*(x - cx) + (y - cy)*(y - cy));
+                        assertTrue("radius " + radius + " at (" + x + ", " + y + ")", Math.abs(d - radius) < 1);
+                        assertEquals(actual.getRGB(x, y), actual.getRGB(2*cx - x, y));
+                        assertEquals(actual.getRGB(x, y), actual.getRGB(x, 2*cy - y));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testFillCircle() {
+        int radius = 15;
+        raster.circle(20, 20, CircleTable.get(radius), 0xFFFFFFFF);
+        BufferedImage filled = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        new Rasterizer(filled).fillCircle(20, 20, CircleTable.get(radius), 0xFFFFFFFF);
+        for(int y = 0; y < H; y++) {
+            int runs = 0;
+            for(int x = 0; x < W; x++) {
+                if(actual.getRGB(x, y) != 0) {
+                    assertTrue(filled.getRGB(x, y) != 0);
+                }
+                if(filled.getRGB(x, y) != 0 && (x == 0 || filled.getRGB(x - 1, y) == 0)) {
+                    runs++;
+                }
+            }
+            assertTrue(runs <= 1);
+        }
+        assertSame(CircleTable.get(radius), CircleTable.get(radius));
+    }
+
+    public void testClippedCircle() {
+        g.setColor(Color.WHITE);
+        BufferedImage big = new BufferedImage(3*W, 3*H, BufferedImage.TYPE_INT_ARGB);
+        Rasterizer bigRaster = new Rasterizer(big);
+        for(int i = 0; i < 50; i++) {
+            int x = r.nextInt(3*W) - W;
+            int y = r.nextInt(3*H) - H;
+            CircleTable t = CircleTable.get(1 + r.nextInt(W));
+            bigRaster.circle(x + W, y + H, t, 0xFFFFFFFF);
+            raster.circle(x, y, t, 0xFFFFFFFF);
+            bigRaster.fillCircle(x + W, y + H, t, 0xFFFFFFFF);
+            raster.fillCircle(x, y, t, 0xFFFFFFFF);
+        }
+        g.drawImage(big, -W, -H, null);
+        assertSameImage();
+    }
+
+    public void testFillPolygon() {
+        for(int i = 0; i < 200; i++) {
+            int n = 3 + r.nextInt(6);
+            int[] xs = new int[n];
+            int[] ys = new int[n];
+            for(int j = 0; j < n; j++) {
+                xs[j] = r.nextInt(W + 40) - 20;
+                ys[j] = r.nextInt(H + 40) - 20;
+            }
+            int rgb = randomRGB();
+            g.setColor(new Color(rgb));
+            g.fillPolygon(xs, ys, n);
+            raster.fillPolygon(xs, ys, n, rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testFillRect() {
+        for(int i = 0; i < 200; i++) {
+            int x = r.nextInt(W + 40) - 20;
+            int y = r.nextInt(H + 40) - 20;
+            int w = r.nextInt(W);
+            int h = r.nextInt(H);
+            int rgb = randomRGB();
+            g.setColor(new Color(rgb));
+            g.fillRect(x, y, w, h);
+            raster.fillRect(x, y, w, h, rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testText() {
+        Font f = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        g.setFont(f);
+        FontMetrics fm = g.getFontMetrics();
+        GlyphAtlas atlas = new GlyphAtlas(f, fm);
+        String s = "Hello, World! ~{}";
+        assertTrue(atlas.containsAll(s));
+        assertFalse(atlas.containsAll("\u00e9"));
+        for(int i = 0; i < 20; i++) {
+            int rgb = randomRGB();
+            int x = r.nextInt(W) - 20;
+            int y = r.nextInt(H) - 10;
+            g.setColor(new Color(rgb));
+            g.drawString(s, x, y + fm.getAscent());
+            raster.text(atlas, x, y, s, 0, s.length(), rgb);
+        }
+        assertSameImage();
+    }
+
+    public void testZoom() {
+        for(int i = 0; i < 1000; i++) {
+            raster.point(r.nextInt(W), r.nextInt(H), randomRGB());
+        }
+        int factor = 3;
+        BufferedImage zoomed = new BufferedImage(factor*W, factor*H, BufferedImage.TYPE_INT_ARGB);
+        Rasterizer.zoom(raster, new Rasterizer(zoomed), factor, new Rectangle(0, 0, W, H/2));
+        Rasterizer.zoom(raster, new Rasterizer(zoomed), factor, new Rectangle(5, H/2, W, H));
+        for(int y = 0; y < factor*H; y++) {
+            for(int x = 0; x < factor*W; x++) {
+                int expected = (y >= factor*H/2 && x < factor*5)?0:actual.getRGB(x/factor, y/factor);
+                assertEquals("pixel (" + x + ", " + y + ")", expected, zoomed.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testZoomCopy() {
+        for(int i = 0; i < 1000; i++) {
+            raster.point(r.nextInt(W), r.nextInt(H), randomRGB());
+        }
+        BufferedImage copy = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        Rasterizer.zoom(raster, new Rasterizer(copy), 1, new Rectangle(-5, -5, W + 10, H + 10));
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                assertEquals("pixel (" + x + ", " + y + ")", actual.getRGB(x, y), copy.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testOver() {
+        BufferedImage layer = new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage back = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                layer.setRGB(x, y, r.nextInt());
+                back.setRGB(x, y, randomRGB());
+            }
+        }
+        BufferedImage expected = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        expected.getGraphics().drawImage(back, 0, 0, null);
+        expected.getGraphics().drawImage(layer, 5, 5, W - 10, H - 10, 5, 5, W - 10, H - 10, null);
+        Rasterizer.over(new Rasterizer(layer), new Rasterizer(back), 5, 5, W - 15, H - 15);
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                assertEquals("pixel (" + x + ", " + y + ")", expected.getRGB(x, y), back.getRGB(x, y));
+            }
+        }
+    }
+
+    public void testClip() {
+        raster.setClip(10, 10, 5, 5);
+        raster.point(9, 10, 0xFFFFFFFF);
+        raster.point(15, 14, 0xFFFFFFFF);
+        assertSameImage();
+        raster.point(14, 14, 0xFFFFFFFF);
+        assertEquals(0xFFFFFFFF, actual.getRGB(14, 14));
+    }
+}
@@ -0,0 +1,132 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import junit.framework.TestCase;
+
+/**
+ * RenderStatsTest
+ *
+ * @author Ronald Chen
+ */
+public class RenderStatsTest extends TestCase {
+
+    public void setUp() {
+        System.setProperty("basicj.headless", "true");
+    }
+
+    public void tearDown() {
+        System.clearProperty("basicj.headless");
+    }
+
+    public void testCounters() {
+        Screen scr = new Screen();
+        for(int i = 0; i < 10; i++) {
+            scr.point(i, i);
+        }
+        scr.line(0, 0, 10, 10);
+        scr.circle(50, 50, 10);
+        scr.circle(50, 50, 20);
+        scr.fillCircle(50, 50, 5);
+        scr.text(0, 0, "a");
+        scr.print("hello");
+        scr.flush();
+        scr.zoom(2);
+        scr.flush();
+
+        RenderStats stats = scr.stats();
+        assertEquals(10, stats.getPoints());
+        assertEquals(1, stats.getLines());
+        assertEquals(2, stats.getCircles());
+        assertEquals(1, stats.getFillCircles());
+        assertEquals(1, stats.getTexts());
+        assertEquals(1, stats.getPrints());
+        assertEquals(1, stats.getLayout().getCount());
+        assertEquals(2, stats.getCompose().getCount());
+        assertEquals(2, stats.getZoom().getCount());
+        assertEquals(2, stats.getPublishedFrames());
+    }
+
+    public void testTiming() {
+        Histogram h = new Histogram();
+        for(int i = 1; i <= 100; i++) {
+            h.record(1000*i);
+        }
+        Timing t = h.snapshot();
+        assertEquals(100, t.getCount());
+        assertEquals(50500, t.getMeanNanos());
+        assertEquals(100000, t.getMaxNanos());
+        assertTrue(t.percentileNanos(0.5) >= 50000);
+        assertTrue(t.percentileNanos(0.5) < 2*50000);
+        assertEquals(100000, t.percentileNanos(1));
+        long sum = 0;
+        for(long b : t.getBuckets()) {
+            sum += b;
+        }
+        assertEquals(100, sum);
+        assertEquals(0, new Histogram().snapshot().percentileNanos(0.99));
+    }
+
+    public void testMXBeanOff() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("basicj:type=RenderStats,*");
+        int before = server.queryNames(pattern, null).size();
+        new BasicJ();
+        assertEquals(before, server.queryNames(pattern, null).size());
+    }
+
+    public void testStatsBean() {
+        Screen scr = new Screen();
+        scr.point(0, 0);
+        BasicJ.StatsBean bean = new BasicJ.StatsBean(scr);
+        assertEquals(1, bean.getStats().getPoints());
+        scr = null;
+        for(int i = 0; i < 100 && bean.getStats() != null; i++) {
+            System.gc();
+        }
+        assertNull(bean.getStats());
+    }
+
+    public void testMXBean() throws Exception {
+        System.setProperty("basicj.stats", "true");
+        BasicJ b;
+        try {
+            b = new BasicJ();
+        } finally {
+            System.clearProperty("basicj.stats");
+        }
+        b.line(0, 0, 5, 5);
+        b.line(0, 0, 5, 6);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = server.queryNames(new ObjectName("basicj:type=RenderStats,*"), null);
+        assertFalse(names.isEmpty());
+        boolean found = false;
+        for(ObjectName name : names) {
+            CompositeData stats = (CompositeData) server.getAttribute(name, "Stats");
+            found |= ((Long) stats.get("lines")).longValue() == 2;
+        }
+        assertTrue(found);
+    }
+}
@@ -0,0 +1,140 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the hot Screen commands do not allocate once warmed up.
+ * 
+ * @author Ronald Chen
+ */
+public class ScreenAllocationTest extends TestCase {
+
+    private com.sun.management.ThreadMXBean threads;
+    
+    private Screen scr;
+
+    public void setUp() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        scr = new Screen();
+    }
+    
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    private void colorPointLoop() {
+        for(int y = 0; y < 256; y++) {
+            for(int x = 0; x < 256; x++) {
+                scr.color((y << 16) | (y << 8) | x);
+                scr.point(x, y);
+            }
+        }
+    }
+
+    /**
+     * Draws a frame of an animation that clears the screen every frame.
+     */
+    private void clearFrame(int i) {
+        scr.clear();
+        scr.color(0xFF0000);
+        scr.fillCircle(50 + i%20, 50, 10);
+        scr.line(0, 0, 99, i%100);
+        scr.flush();
+    }
+
+    public void testClearFrame() {
+        scr.screen(100, 100);
+        for(int i = 0; i < 5000; i++) {
+            clearFrame(i);
+        }
+        int frames = 100;
+        long before = allocatedBytes();
+        for(int i = 0; i < frames; i++) {
+            clearFrame(i);
+        }
+        long allocated = allocatedBytes() - before;
+        // a new back buffer and draw buffer would be 80000 bytes a frame
+        assertTrue("allocated " + allocated/frames + " bytes per frame", allocated < 1024);
+    }
+
+    /**
+     * Resizes the screen and publishes two frames, so both frames the
+     * publisher swaps between are resized.
+     */
+    private void resize(int width, int height) {
+        scr.screen(width, height);
+        scr.flush();
+        scr.point(0, 0);
+        scr.flush();
+    }
+
+    public void testScreenPool() {
+        for(int i = 0; i < 4; i++) {
+            resize(200, 100);
+            resize(100, 100);
+        }
+        long before = allocatedBytes();
+        resize(200, 100);
+        long allocated = allocatedBytes() - before;
+        // less than one 200x100 buffer, so the buffers and the frames came 
+        // from the pool
+        assertTrue("allocated " + allocated + " bytes", allocated < 4*200*100);
+    }
+
+    public void testPrintLayout() {
+        PrintLayout layout = new PrintLayout(80, 25);
+        for(int i = 0; i < 100000; i++) {
+            layout.print(0xFF000000 | i, "x");
+        }
+        long before = allocatedBytes();
+        for(int i = 0; i < 100000; i++) {
+            // a new color for every character, so every character is a run
+            layout.print(0xFF000000 | i, "x");
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    public void testStats() {
+        Histogram h = new Histogram();
+        for(int i = 0; i < 10000; i++) {
+            h.recordSince(System.nanoTime());
+        }
+        long before = allocatedBytes();
+        for(int i = 0; i < 10000; i++) {
+            h.recordSince(System.nanoTime());
+        }
+        long allocated = allocatedBytes() - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    public void testColorPoint() {
+        for(int i = 0; i < 20; i++) {
+            colorPointLoop();
+        }
+        long before = allocatedBytes();
+        colorPointLoop();
+        long allocated = allocatedBytes() - before;
+        // getThreadAllocatedBytes itself may allocate a little
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
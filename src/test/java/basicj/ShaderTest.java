@@ -0,0 +1,96 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import junit.framework.TestCase;
+
+/**
+ * ShaderTest
+ *
+ * @author Ronald Chen
+ */
+public class ShaderTest extends TestCase {
+
+    private static final int W = 300;
+    private static final int H = 203;
+
+    private static final PixelFunction XOR = new PixelFunction() {
+        public int rgb(int x, int y) {
+            return (x ^ y)*0x010203;
+        }
+    };
+
+    public void testShade() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        Shader.shade(raster, XOR, 0, 0, W, H);
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                assertEquals(0xFF000000 | XOR.rgb(x, y), raster.getPixels()[y*W + x]);
+            }
+        }
+    }
+
+    public void testClipped() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        Shader.shade(raster, XOR, -10, 100, 20, 500);
+        for(int y = 0; y < H; y++) {
+            for(int x = 0; x < W; x++) {
+                int expected = (x < 10 && y >= 100)?0xFF000000 | XOR.rgb(x, y):0;
+                assertEquals(expected, raster.getPixels()[y*W + x]);
+            }
+        }
+    }
+
+    public void testException() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        try {
+            Shader.shade(raster, new PixelFunction() {
+                public int rgb(int x, int y) {
+                    return 100/(y - 150);
+                }
+            }, 0, 0, W, H);
+            fail();
+        } catch(ArithmeticException e) {
+        }
+    }
+
+    public void testError() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        try {
+            Shader.shade(raster, new PixelFunction() {
+                public int rgb(int x, int y) {
+                    if(y == 150) {
+                        throw new InternalError("y = 150");
+                    }
+                    return 0;
+                }
+            }, 0, 0, W, H);
+            fail();
+        } catch(InternalError e) {
+        }
+    }
+
+    public void testInterrupted() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        Thread.currentThread().interrupt();
+        Shader.shade(raster, XOR, 0, 0, W, H);
+        // still shaded, and the interrupt is not lost
+        assertTrue(Thread.interrupted());
+        assertEquals(0xFF000000 | XOR.rgb(W - 1, H - 1), raster.getPixels()[W*H - 1]);
+    }
+}
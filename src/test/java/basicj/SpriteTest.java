@@ -0,0 +1,127 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * SpriteTest
+ *
+ * @author Ronald Chen
+ */
+public class SpriteTest extends TestCase {
+
+    private static final int W = 64;
+    private static final int H = 48;
+
+    private static final int KEY = 0xFF00FF;
+
+    private BufferedImage img;
+
+    public void setUp() {
+        Random r = new Random(5);
+        img = new BufferedImage(13, 9, BufferedImage.TYPE_INT_ARGB);
+        for(int y = 0; y < img.getHeight(); y++) {
+            for(int x = 0; x < img.getWidth(); x++) {
+                switch(r.nextInt(4)) {
+                case 0:
+                    img.setRGB(x, y, 0xFF000000 | KEY);
+                    break;
+                case 1:
+                    img.setRGB(x, y, 0x10FFFFFF);
+                    break;
+                default:
+                    img.setRGB(x, y, 0xFF000000 | r.nextInt(0x1000000));
+                }
+            }
+        }
+    }
+
+    private int expected(int x, int y, int colorKey) {
+        if(x < 0 || y < 0 || x >= img.getWidth() || y >= img.getHeight()) {
+            return 0;
+        }
+        int argb = img.getRGB(x, y);
+        if((argb >>> 24) < 0x80 || (argb & 0xFFFFFF) == colorKey) {
+            return 0;
+        }
+        return argb;
+    }
+
+    private void assertBlit(int colorKey) {
+        Sprite s = new Sprite(img, colorKey);
+        for(int y = -12; y < H + 2; y += 3) {
+            for(int x = -15; x < W + 2; x += 4) {
+                Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+                raster.sprite(s, x, y);
+                for(int py = 0; py < H; py++) {
+                    for(int px = 0; px < W; px++) {
+                        assertEquals("sprite at (" + x + ", " + y + ") pixel (" + px + ", " + py + ")", expected(px - x, py - y, colorKey), raster.getPixels()[py*W + px]);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testColorKey() {
+        assertBlit(KEY);
+    }
+
+    public void testNoColorKey() {
+        assertBlit(Sprite.NO_COLOR_KEY);
+    }
+
+    public void testFarAway() {
+        Rasterizer raster = new Rasterizer(new int[W*H], W, H, true);
+        raster.sprite(new Sprite(img, KEY), Integer.MIN_VALUE + 5, Integer.MAX_VALUE - 5);
+        raster.sprite(new Sprite(img, KEY), Integer.MAX_VALUE - 5, 0);
+        raster.sprite(new Sprite(img, KEY), Integer.MIN_VALUE + 5, 0);
+        for(int p : raster.getPixels()) {
+            assertEquals(0, p);
+        }
+    }
+
+    public void testLoad() throws IOException {
+        File file = File.createTempFile("sprite", ".png");
+        try {
+            ImageIO.write(img, "png", file);
+            Screen scr = new Screen();
+            int id = scr.loadSprite(file.getPath(), KEY);
+            assertEquals(id, scr.loadSprite(file.getPath(), KEY));
+            assertTrue(id != scr.loadSprite(file.getPath(), Sprite.NO_COLOR_KEY));
+            assertTrue(scr.isSprite(id));
+            assertFalse(scr.isSprite(-1));
+            scr.sprite(id, 10, 10);
+            assertEquals(1, scr.stats().getSprites());
+        } finally {
+            file.delete();
+        }
+        try {
+            new Screen().loadSprite(file.getPath(), KEY);
+            fail();
+        } catch(IOException e) {
+        }
+    }
+}
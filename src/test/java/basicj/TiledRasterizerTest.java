@@ -0,0 +1,114 @@
+/*----------------------------------------------------------------------------
+ This file is part of BasicJ.
+
+ BasicJ is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ BasicJ is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with BasicJ; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ ----------------------------------------------------------------------------*/
+package basicj;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * TiledRasterizerTest
+ *
+ * @author Ronald Chen
+ */
+public class TiledRasterizerTest extends TestCase {
+
+    private static final int W = 1000;
+    private static final int H = 700;
+
+    private Random r;
+
+    private Rasterizer expected;
+
+    private Rasterizer actual;
+
+    private TiledRasterizer tiler;
+
+    public void setUp() {
+        r = new Random(3);
+        expected = new Rasterizer(new int[W*H], W, H, true);
+        actual = new Rasterizer(new int[W*H], W, H, true);
+        tiler = new TiledRasterizer(4);
+    }
+
+    public void tearDown() {
+        tiler.shutdown();
+    }
+
+    /**
+     * Draws n random overlapping primitives, some of them off the edges.
+     */
+    private void draw(int n) {
+        tiler.begin(actual);
+        for(int i = 0; i < n; i++) {
+            int argb = 0xFF000000 | r.nextInt(0x1000000);
+            int x = r.nextInt(W + 200) - 100;
+            int y = r.nextInt(H + 200) - 100;
+            switch(r.nextInt(5)) {
+            case 0:
+                expected.point(x, y, argb);
+                tiler.point(x, y, argb);
+                break;
+            case 1:
+                int x1 = r.nextInt(3*W) - W;
+                int y1 = r.nextInt(3*H) - H;
+                expected.line(x, y, x1, y1, argb);
+                tiler.line(x, y, x1, y1, argb);
+                break;
+            case 2:
+                CircleTable t = CircleTable.get(1 + r.nextInt(300));
+                expected.circle(x, y, t, argb);
+                tiler.circle(x, y, t, argb);
+                break;
+            case 3:
+                t = CircleTable.get(1 + r.nextInt(60));
+                expected.fillCircle(x, y, t, argb);
+                tiler.fillCircle(x, y, t, argb);
+                break;
+            case 4:
+                int w = r.nextInt(200);
+                int h = r.nextInt(200);
+                expected.fillRect(x, y, w, h, argb);
+                tiler.fillRect(x, y, w, h, argb);
+                break;
+            }
+        }
+        tiler.rasterize();
+    }
+
+    public void testSameAsSequential() {
+        for(int i = 0; i < 10; i++) {
+            draw(2000);
+            assertTrue(Arrays.equals(expected.getPixels(), actual.getPixels()));
+        }
+    }
+
+    public void testSmallBatch() {
+        draw(10);
+        assertTrue(Arrays.equals(expected.getPixels(), actual.getPixels()));
+    }
+
+    public void testNewTarget() {
+        draw(100);
+        expected = new Rasterizer(new int[300*200], 300, 200, false);
+        actual = new Rasterizer(new int[300*200], 300, 200, false);
+        draw(1000);
+        assertTrue(Arrays.equals(expected.getPixels(), actual.getPixels()));
+    }
+}